@@ -0,0 +1,47 @@
+package com.raycaster;
+
+import java.util.ArrayList;
+import java.util.Random;
+import com.badlogic.gdx.Gdx;
+import com.github.tommyettinger.digital.TrigTools;
+
+public class Batch {
+	public static void main(String[] arg) {
+		if (arg.length == 0) {
+			System.err.println("usage: Batch <directory> [--frames n] [--width n] [--height n] [--fov degrees] [--threads n] [--seed n]");
+			System.exit(2);
+		}
+
+		Headless.init();
+		int frames = 200, width = 640, height = 360, fov = 90, threads = Runtime.getRuntime().availableProcessors();
+		long seed = 1;
+		for (int i = 1; i + 1 < arg.length; i += 2) {
+			switch (arg[i]) {
+				case "--frames": frames = Integer.parseInt(arg[i + 1]); break;
+				case "--width": width = Integer.parseInt(arg[i + 1]); break;
+				case "--height": height = Integer.parseInt(arg[i + 1]); break;
+				case "--fov": fov = Integer.parseInt(arg[i + 1]); break;
+				case "--threads": threads = Integer.parseInt(arg[i + 1]); break;
+				case "--seed": seed = Long.parseLong(arg[i + 1]); break;
+				default: throw new IllegalArgumentException("Unknown option " + arg[i]);
+			}
+		}
+
+		Map map = new Map(32);
+		map.randomize(0.15f, seed);
+
+		// Poses from the centres of random open cells, looking in random directions
+		Random random = new Random(seed);
+		ArrayList<Farm.Pose> poses = new ArrayList<Farm.Pose>(frames);
+		while (poses.size() < frames) {
+			final int x = random.nextInt(map.width), y = random.nextInt(map.height);
+			if (map.get(x, y) == 0)
+				poses.add(new Farm.Pose(x + 0.5, y + 0.5, random.nextDouble() * TrigTools.TAU_D, fov, width, height));
+		}
+
+		Farm farm = new Farm(map, threads);
+		System.out.println(farm.render(poses, Gdx.files.absolute(arg[0])));
+		farm.dispose();
+		map.dispose();
+	}
+}
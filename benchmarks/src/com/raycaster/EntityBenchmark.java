@@ -0,0 +1,74 @@
+package com.raycaster;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// A fixed few hundred entities in view among a growing total: culling should stay flat while a full scan grows
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityBenchmark {
+	private static final int SIZE = 1024;
+	private static final int COLUMNS = 360;
+	private static final int VISIBLE = 300;
+	private static final double RANGE = 32;
+	private static final double FOCAL_LENGTH = 1;
+
+	@Param({"1000", "10000", "100000"})
+	public int total;
+
+	private Entities entities;
+	private Sprites sprites;
+	private double x;
+	private double y;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		this.entities = new Entities(SIZE, SIZE);
+		this.sprites = new Sprites();
+		this.x = this.y = SIZE / 2 + 0.5;
+
+		// In view: ahead of the camera, facing +x, inside a 90 degree cone
+		for (int i = 0; i < VISIBLE; i++) {
+			final double z = 1 + random.nextDouble() * (RANGE - 2);
+			this.entities.add(this.x + z, this.y + (random.nextDouble() * 2 - 1) * z * 0.9, 0, 0.5);
+		}
+		// Everything else is behind the camera, out of the cone's bounding box
+		for (int i = VISIBLE; i < this.total; i++)
+			this.entities.add(random.nextDouble() * (SIZE / 2 - 16), random.nextDouble() * SIZE, 0, 0.5);
+	}
+
+	@Benchmark
+	public int cull() {
+		this.entities.cull(this.x, this.y, 0, FOCAL_LENGTH, RANGE, COLUMNS, this.sprites);
+		return this.sprites.count;
+	}
+
+	@Benchmark
+	public void scan(Blackhole blackhole) {
+		final Entities entities = this.entities;
+		int count = 0;
+		for (int id = 0; id < entities.size; id++) {
+			final double z = entities.x[id] - this.x, side = entities.y[id] - this.y;
+			if (z > Sprites.NEAR && z < RANGE && Math.abs(side) - entities.scale[id] / 2 <= z / FOCAL_LENGTH)
+				count++;
+		}
+		blackhole.consume(count);
+	}
+}
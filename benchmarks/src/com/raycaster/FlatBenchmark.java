@@ -0,0 +1,58 @@
+package com.raycaster;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Camera.drawFlat can't run here: the camera needs a GL context for its batch, and every flat ends in a
+// texture upload. Rasterizer.drawFlat walks the same rows with the same lens, so it is the one tracked,
+// and the upload is counted by the profiler's uploaded bytes in game instead
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlatBenchmark {
+	@Param({"360", "960", "1920"})
+	public int resolution;
+
+	private Map map;
+	private Rasterizer rasterizer;
+	private double direction;
+
+	@Setup
+	public void setup() {
+		Headless.init();
+		this.map = new Map(32);
+		this.rasterizer = new Rasterizer(this.resolution, this.resolution * 9 / 16, Math.PI / 2, 32, 16);
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.rasterizer.dispose();
+		this.map.dispose();
+	}
+
+	@Benchmark
+	public void floor() {
+		this.direction += 0.01;
+		this.rasterizer.drawFlat(1.5, 1.5, 0, this.direction, this.map.floorTexture, 1, Rasterizer.FLOOR, 0, this.resolution);
+	}
+
+	@Benchmark
+	public void clouds() {
+		this.direction += 0.01;
+		this.rasterizer.drawFlat(1.5, 1.5, 50, this.direction, this.map.skybox.foreground, 2500, Rasterizer.FOREGROUND, 0, this.resolution);
+	}
+}
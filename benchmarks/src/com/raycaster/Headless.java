@@ -0,0 +1,18 @@
+package com.raycaster;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessFiles;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+
+public class Headless {
+	private static boolean initialized;
+
+	// Just enough of libGDX to decode assets and build pixmaps, with no GL context
+	public static synchronized void init() {
+		if (initialized)
+			return;
+		GdxNativesLoader.load();
+		Gdx.files = new HeadlessFiles();
+		initialized = true;
+	}
+}
@@ -0,0 +1,41 @@
+package com.raycaster;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.badlogic.gdx.graphics.Color;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NoiseBenchmark {
+	private final Color tint = new Color(0x9097A4FF);
+	private final Noise noise = new Noise();
+
+	@Setup
+	public void setup() {
+		Headless.init();
+	}
+
+	// Same sizes as the default SkyBox, generated directly so the on-disk cache never answers
+	@Benchmark
+	public void background() {
+		this.noise.perlinNoise(1080, 1080, 1, 0.2f, 1f, this.tint).dispose();
+	}
+
+	@Benchmark
+	public void clouds() {
+		this.noise.fractalNoise(512, 512, 4, 0.2f, 0.9f, this.tint).dispose();
+	}
+}
@@ -0,0 +1,48 @@
+package com.raycaster;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerBenchmark {
+	private Map map;
+	private Player player;
+	private double direction;
+
+	@Setup
+	public void setup() {
+		Headless.init();
+		this.map = new Map(32);
+		this.map.randomize(0.15f);
+		this.player = new Player(15.5, 15.5);
+		this.map.set(this.player.x, this.player.y, 0);
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.player.dispose();
+		this.map.dispose();
+	}
+
+	// Walks in a slowly turning circle so the player keeps running into walls
+	@Benchmark
+	public double walk() {
+		this.direction += 0.05;
+		return this.player.walk(0.05, this.map, this.direction);
+	}
+}
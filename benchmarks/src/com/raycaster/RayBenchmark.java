@@ -0,0 +1,70 @@
+package com.raycaster;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RayBenchmark {
+	private static final int COLUMNS = 360;
+
+	@Param({"8", "32", "128"})
+	public double range;
+
+	@Param({"0.05", "0.15", "0.3"})
+	public float density;
+
+	private Map map;
+	private Hits hits;
+	private Caster caster;
+	private double x;
+	private double y;
+	private double direction;
+
+	@Setup
+	public void setup() {
+		Headless.init();
+		this.map = new Map(256);
+		this.map.randomize(this.density);
+		this.x = this.y = 128.5;
+		this.map.set(this.x, this.y, 0);
+		this.hits = new Hits(COLUMNS);
+		this.caster = new Caster(this.hits, this.range);
+		new Lens(COLUMNS, COLUMNS, Math.PI / 2).aim(this.hits);
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.map.dispose();
+	}
+
+	@Benchmark
+	public void ray(Blackhole blackhole) {
+		this.direction += 0.01;
+		for (int column = 0; column < COLUMNS; column++)
+			blackhole.consume(new Ray(this.map, this.x, this.y, this.direction + this.hits.angle[column], this.range));
+	}
+
+	@Benchmark
+	public void caster(Blackhole blackhole) {
+		this.direction += 0.01;
+		this.caster.cast(this.map, this.x, this.y, this.direction, 0, COLUMNS);
+		blackhole.consume(this.hits);
+	}
+}
@@ -0,0 +1,180 @@
+package com.raycaster;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Properties;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+
+public class Replay {
+	private static final int WIDTH = 1920;
+	private static final int HEIGHT = 1080;
+
+	private final Recording recording;
+	private final com.sun.management.ThreadMXBean threads;
+
+	private long[] times;
+	private long[] allocations;
+	private long collections;
+	private long collectionTime;
+
+	public Replay(Recording recording) {
+		this.recording = recording;
+		this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+	}
+
+	// Same world as Raycaster.create(), rebuilt from the recorded seed
+	public void run(int resolution, int threads) {
+		this.run(resolution, threads, 90);
+	}
+
+	// The field of view is changed after the camera is built, so every replay goes through rebuilding the
+	// software renderer and disposing of it
+	public void run(int resolution, int threads, int fov) {
+		final int frames = this.recording.size();
+		this.times = new long[frames];
+		this.allocations = new long[frames];
+
+		Map map = new Map(32);
+		Player player = new Player(1.5, 15.5);
+		Controls controls = new Controls(false);
+		Camera camera = new Camera(WIDTH, HEIGHT, resolution, 90, threads);
+		camera.setFov(fov);
+		map.randomize(0.15f, this.recording.seed);
+		map.set(player.x, player.y, 0);
+		map.skybox.animate(Clouds.DEFAULT_BUDGET);
+
+		final long collections = collections(), collectionTime = collectionTime();
+		for (int frame = 0; frame < frames; frame++) {
+			final long allocated = this.allocated();
+			final long start = System.nanoTime();
+
+			final float seconds = this.recording.play(frame, controls);
+			camera.profiler.begin(Profiler.Phase.UPDATE);
+			player.update(controls, map, seconds);
+			map.survey(player.x, player.y);
+			map.flush();
+			camera.profiler.end(Profiler.Phase.UPDATE);
+			camera.profiler.begin(Profiler.Phase.CLOUDS);
+			if (map.skybox != null && map.skybox.clouds != null)
+				map.skybox.clouds.update();
+			camera.profiler.end(Profiler.Phase.CLOUDS);
+			camera.update();
+			camera.render(player, map);
+			camera.profiler.frame();
+
+			this.times[frame] = System.nanoTime() - start;
+			this.allocations[frame] = this.allocated() - allocated;
+		}
+		this.collections = collections() - collections;
+		this.collectionTime = collectionTime() - collectionTime;
+
+		camera.dispose();
+		player.dispose();
+		map.dispose();
+	}
+
+	// Worker threads allocate on the camera's behalf, so every live thread is counted
+	private long allocated() {
+		long total = 0;
+		for (long bytes : this.threads.getThreadAllocatedBytes(this.threads.getAllThreadIds()))
+			total += Math.max(bytes, 0);
+		return total;
+	}
+
+	private static long collections() {
+		long total = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+			total += Math.max(collector.getCollectionCount(), 0);
+		return total;
+	}
+
+	private static long collectionTime() {
+		long total = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+			total += Math.max(collector.getCollectionTime(), 0);
+		return total;
+	}
+
+	private static double percentile(long[] sorted, double percentile) {
+		final int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+		return sorted[Math.max(index, 0)] / 1e6;
+	}
+
+	public Properties results() {
+		long[] sorted = this.times.clone();
+		Arrays.sort(sorted);
+		long allocated = 0;
+		for (long bytes : this.allocations)
+			allocated += bytes;
+
+		Properties results = new Properties();
+		results.setProperty("frames", Integer.toString(sorted.length));
+		results.setProperty("p50", Double.toString(percentile(sorted, 50)));
+		results.setProperty("p95", Double.toString(percentile(sorted, 95)));
+		results.setProperty("p99", Double.toString(percentile(sorted, 99)));
+		results.setProperty("max", Double.toString(percentile(sorted, 100)));
+		results.setProperty("allocation", Long.toString(allocated / Math.max(sorted.length, 1)));
+		results.setProperty("collections", Long.toString(this.collections));
+		results.setProperty("collectionTime", Long.toString(this.collectionTime));
+		return results;
+	}
+
+	public static void main(String[] arg) throws Exception {
+		if (arg.length == 0) {
+			System.err.println("usage: Replay <trace> [--resolution n] [--threads n] [--fov degrees] [--warmup n] [--save file] [--baseline file] [--tolerance fraction]");
+			System.exit(2);
+		}
+
+		Headless.init();
+		int resolution = 360, threads = Runtime.getRuntime().availableProcessors(), fov = 90, warmup = 1;
+		double tolerance = 0.1;
+		String save = null, baseline = null;
+		for (int i = 1; i + 1 < arg.length; i += 2) {
+			switch (arg[i]) {
+				case "--resolution": resolution = Integer.parseInt(arg[i + 1]); break;
+				case "--threads": threads = Integer.parseInt(arg[i + 1]); break;
+				case "--fov": fov = Integer.parseInt(arg[i + 1]); break;
+				case "--warmup": warmup = Integer.parseInt(arg[i + 1]); break;
+				case "--save": save = arg[i + 1]; break;
+				case "--baseline": baseline = arg[i + 1]; break;
+				case "--tolerance": tolerance = Double.parseDouble(arg[i + 1]); break;
+				default: throw new IllegalArgumentException("Unknown option " + arg[i]);
+			}
+		}
+
+		Replay replay = new Replay(Recording.load(Gdx.files.absolute(arg[0])));
+		for (int i = 0; i < warmup; i++)
+			replay.run(resolution, threads, fov);
+		replay.run(resolution, threads, fov);
+
+		Properties results = replay.results();
+		System.out.printf("frames %s  p50 %.3f ms  p95 %.3f ms  p99 %.3f ms  max %.3f ms%n",
+			results.getProperty("frames"),
+			Double.parseDouble(results.getProperty("p50")), Double.parseDouble(results.getProperty("p95")),
+			Double.parseDouble(results.getProperty("p99")), Double.parseDouble(results.getProperty("max")));
+		System.out.printf("allocation %s bytes/frame  gc %s collections in %s ms%n",
+			results.getProperty("allocation"), results.getProperty("collections"), results.getProperty("collectionTime"));
+
+		if (save != null) {
+			FileHandle file = Gdx.files.absolute(save);
+			try (java.io.Writer writer = file.writer(false)) {
+				results.store(writer, "Replay of " + arg[0]);
+			}
+		}
+
+		if (baseline != null) {
+			Properties previous = new Properties();
+			try (java.io.Reader reader = Gdx.files.absolute(baseline).reader()) {
+				previous.load(reader);
+			}
+			final double before = Double.parseDouble(previous.getProperty("p99"));
+			final double after = Double.parseDouble(results.getProperty("p99"));
+			if (after > before * (1 + tolerance)) {
+				System.err.printf("p99 regressed: %.3f ms against a baseline of %.3f ms%n", after, before);
+				System.exit(1);
+			}
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package com.raycaster;
+
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.utils.Disposable;
+import com.github.tommyettinger.digital.MathTools;
+
+public class Atlas implements Disposable {
+	protected static final int PADDING = 2;
+
+	protected final int size;
+	protected final int[] regionX;
+	protected final int[] regionY;
+	protected final int[] regionWidth;
+	protected final int[] regionHeight;
+	protected final Surface surface;
+
+	public Atlas(Surface... surfaces) {
+		this(PADDING, surfaces);
+	}
+
+	// Regions are packed onto shelves, tallest first, into a power of two sized surface
+	public Atlas(int padding, Surface... surfaces) {
+		this.size = surfaces.length;
+		this.regionX = new int[this.size];
+		this.regionY = new int[this.size];
+		this.regionWidth = new int[this.size];
+		this.regionHeight = new int[this.size];
+
+		Integer[] order = new Integer[this.size];
+		long area = 0;
+		int widest = 1;
+		for (int i = 0; i < this.size; i++) {
+			order[i] = i;
+			this.regionWidth[i] = surfaces[i].width;
+			this.regionHeight[i] = surfaces[i].height;
+			area += (long) (surfaces[i].width + padding * 2) * (surfaces[i].height + padding * 2);
+			widest = Math.max(widest, surfaces[i].width + padding * 2);
+		}
+		Arrays.sort(order, (a, b) -> Integer.compare(surfaces[b].height, surfaces[a].height));
+
+		final int width = MathTools.nextPowerOfTwo(Math.max(widest, (int) Math.ceil(Math.sqrt(area))));
+		int x = 0, y = 0, shelf = 0;
+		for (int i : order) {
+			final int w = surfaces[i].width + padding * 2, h = surfaces[i].height + padding * 2;
+			if (x + w > width) {
+				x = 0;
+				y += shelf;
+				shelf = 0;
+			}
+			this.regionX[i] = x + padding;
+			this.regionY[i] = y + padding;
+			x += w;
+			shelf = Math.max(shelf, h);
+		}
+		final int height = MathTools.nextPowerOfTwo(Math.max(y + shelf, 1));
+
+		Pixmap pixmap = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+		pixmap.setFilter(Pixmap.Filter.NearestNeighbour);
+		IntBuffer pixels = pixmap.getPixels().order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+		for (int i = 0; i < this.size; i++)
+			copy(surfaces[i], pixels, width, this.regionX[i], this.regionY[i], padding);
+		this.surface = new Surface(pixmap);
+	}
+
+	// The padding repeats the region's edge texels, so sampling just past an edge never picks up a neighbour
+	private static void copy(Surface source, IntBuffer pixels, int stride, int left, int top, int padding) {
+		for (int y = -padding; y < source.height + padding; y++) {
+			final int sy = MathTools.clamp(y, 0, source.height - 1);
+			for (int x = -padding; x < source.width + padding; x++) {
+				final int sx = MathTools.clamp(x, 0, source.width - 1);
+				pixels.put((top + y) * stride + left + x, source.pixels[sy * source.width + sx]);
+			}
+		}
+	}
+
+	public int getRegionCount() {
+		return this.size;
+	}
+
+	// Bytes held for the atlas: the cached texels, the pixmap and, once uploaded, the texture
+	public long getMemory() {
+		final long bytes = (long) this.surface.width * this.surface.height * 4;
+		return this.surface.isUploaded() ? bytes * 3 : bytes * 2;
+	}
+
+	@Override
+	public void dispose() {
+		this.surface.dispose();
+	}
+}
@@ -1,12 +1,12 @@
 package com.raycaster;
 
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.utils.Disposable;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.OrthographicCamera;
-import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.Texture;
-import com.badlogic.gdx.graphics.TextureData;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
 import com.badlogic.gdx.graphics.Color;
@@ -14,17 +14,84 @@ import com.github.tommyettinger.digital.MathTools;
 import com.github.tommyettinger.digital.TrigTools;
 
 public class Camera implements Disposable {
+	public enum Mode {
+		HARDWARE,
+		SOFTWARE
+	}
+
 	protected class Projection {
 		protected double y;
 		protected double height;
 
-		public Projection(double angle, double distance, double height) {
-			double z = distance * TrigTools.cos(angle);
+		public Projection project(int column, double distance, double height) {
+			double z = distance * tier.lens.cos[column];
 			this.height = viewportHeight * height / z;
 			this.y = viewportHeight / 2 * (1 + 1 / z) - this.height;
+			return this;
+		}
+	}
+
+	// Everything sized by the resolution, built once per resolution so switching between them doesn't allocate
+	protected class Tier implements Disposable {
+		protected final int resolution;
+		protected Canvas sky;
+		protected Canvas clouds;
+		protected Canvas floor;
+		protected Hits hits;
+		protected Caster caster;
+		protected Lens lens;
+		protected Sprites sprites;
+		protected Rasterizer rasterizer;
+
+		public Tier(int resolution) {
+			this.resolution = resolution;
+			if (batch != null) {
+				this.sky = new Canvas(resolution, resolution);
+				this.clouds = new Canvas(resolution, resolution);
+				this.floor = new Canvas(resolution, resolution);
+			}
+			this.hits = new Hits(resolution, LAYERS);
+			this.caster = new Caster(this.hits, range);
+			this.sprites = new Sprites();
+			this.focus();
+		}
+
+		// The lens tables and the software renderer are only rebuilt when the field of view changes
+		protected void focus() {
+			this.lens = new Lens(this.resolution, this.resolution, fov);
+			this.lens.aim(this.hits);
+			if (this.rasterizer != null) {
+				this.rasterizer.dispose();
+				this.rasterizer = null;
+			}
+			if (mode == Mode.SOFTWARE)
+				this.prepare();
+		}
+
+		// Only called while the mode is set or the tier is built, never while drawing
+		protected void prepare() {
+			if (this.rasterizer == null)
+				this.rasterizer = new Rasterizer(this.resolution, this.resolution * viewportHeight / viewportWidth, fov, range, lightRange);
+		}
+
+		@Override
+		public void dispose() {
+			if (this.sky != null) {
+				this.sky.dispose();
+				this.clouds.dispose();
+				this.floor.dispose();
+			}
+			if (this.rasterizer != null)
+				this.rasterizer.dispose();
 		}
 	}
 
+	protected static final int LAYERS = 4;
+
+	private static final Color[] OVERLAY = {Color.YELLOW, Color.CYAN, Color.SKY, Color.BROWN, Color.ORANGE, Color.MAGENTA, Color.RED, Color.LIME};
+	private static final Color ZENITH = new Color(Map.ZENITH);
+	private static final Color HORIZON = new Color(Map.SKY);
+
 	protected int viewportWidth;
 	protected int viewportHeight;
 	protected int resolution;
@@ -33,16 +100,26 @@ public class Camera implements Disposable {
 	protected double focalLength;
 	protected double range;
 	protected double lightRange;
+	protected int drawCalls;
+	protected int threads;
+	protected Mode mode;
+	protected Profiler profiler;
 
 	private OrthographicCamera camera;
 	private SpriteBatch batch;
 	private ShapeRenderer shapeRenderer;
+	private Projection wall;
+	private ForkJoinPool pool;
+	private Tier tier;
+	private final ArrayList<Tier> tiers = new ArrayList<Tier>();
 
 	public Camera(int width, int height, int resolution, int fov) {
+		this(width, height, resolution, fov, Runtime.getRuntime().availableProcessors());
+	}
+
+	public Camera(int width, int height, int resolution, int fov, int threads) {
 		this.viewportWidth = width;
 		this.viewportHeight = height;
-		this.resolution = resolution;
-		this.spacing = (double) this.viewportWidth / this.resolution;
 		this.fov =  TrigTools.degreesToRadiansD * MathTools.clamp(fov, 0, 180);
 		this.focalLength = TrigTools.PI_D/this.fov-1;
 		this.range = 32;
@@ -53,10 +130,87 @@ public class Camera implements Disposable {
 		// This forces us to flip textures on the y axis, eg. in Camera#drawSky
 		this.camera = new OrthographicCamera(this.viewportWidth, this.viewportHeight);
 		this.camera.setToOrtho(true, this.viewportWidth, this.viewportHeight);
-		this.batch = new SpriteBatch();
-		this.batch.setProjectionMatrix(camera.combined);
-		this.shapeRenderer = new ShapeRenderer();
-		this.shapeRenderer.setProjectionMatrix(camera.combined);
+		
+		// Without a GL context (eg. the headless backend) only the software renderer is available
+		if (Gdx.gl != null) {
+			this.batch = new SpriteBatch();
+			this.batch.setProjectionMatrix(camera.combined);
+			this.shapeRenderer = new ShapeRenderer();
+			this.shapeRenderer.setProjectionMatrix(camera.combined);
+			this.mode = Mode.HARDWARE;
+		} else {
+			this.mode = Mode.SOFTWARE;
+		}
+		this.wall = new Projection();
+		this.profiler = new Profiler();
+		this.setResolution(resolution);
+		this.setThreads(threads);
+	}
+
+	// Builds the buffers for every resolution that may be switched to later
+	public void allocate(int... resolutions) {
+		for (int resolution : resolutions)
+			this.tier(resolution);
+	}
+
+	private Tier tier(int resolution) {
+		for (Tier tier : this.tiers)
+			if (tier.resolution == resolution)
+				return tier;
+		Tier tier = new Tier(resolution);
+		this.tiers.add(tier);
+		return tier;
+	}
+
+	public void setResolution(int resolution) {
+		if (this.tier != null && resolution == this.resolution)
+			return;
+		this.tier = this.tier(resolution);
+		this.resolution = resolution;
+		this.spacing = (double) this.viewportWidth / this.resolution;
+	}
+
+	public int getResolution() {
+		return this.resolution;
+	}
+
+	public void setFov(int fov) {
+		this.fov =  TrigTools.degreesToRadiansD * MathTools.clamp(fov, 0, 180);
+		this.focalLength = TrigTools.PI_D/this.fov-1;
+		for (Tier tier : this.tiers)
+			tier.focus();
+	}
+
+	// Empty blocks are skipped whole, so long view distances only cost what lies near walls
+	public void setRange(double range) {
+		this.range = range;
+		for (Tier tier : this.tiers) {
+			tier.caster.range = range;
+			if (tier.rasterizer != null)
+				tier.rasterizer.caster.range = range;
+		}
+	}
+
+	public void setThreads(int threads) {
+		if (this.pool != null)
+			this.pool.shutdown();
+		// A single thread casts inline on the render thread, which keeps debugging deterministic
+		this.threads = Math.max(threads, 1);
+		this.pool = this.threads > 1 ? new ForkJoinPool(this.threads) : null;
+	}
+
+	public void setProfiler(Profiler profiler) {
+		this.profiler = profiler;
+	}
+
+	// Switching to the software renderer builds it for every tier at once, rather than on the next frame drawn
+	public void setMode(Mode mode) {
+		if (this.batch == null || mode == this.mode)
+			return;
+		this.mode = mode;
+		if (mode == Mode.SOFTWARE)
+			for (Tier tier : this.tiers)
+				tier.prepare();
 	}
 
 	public void update() {
@@ -64,15 +218,60 @@ public class Camera implements Disposable {
 	}
 	
 	public void render(Player player, Map map) {
-		float ambient = (float) Byte.toUnsignedInt(map.light) / 0xFF;
-		this.drawSky(player, map.skybox, ambient);
-		this.drawFloor(player, map.floorTexture, ambient);
-		this.drawColumns(player, map, ambient);
-		this.drawWeapon(player.weapon, player.weaponScale, player.paces);
+		final Profiler profiler = this.profiler;
+		this.drawCalls = 0;
+		if (this.mode == Mode.SOFTWARE) {
+			profiler.begin(Profiler.Phase.RASTER);
+			this.drawFrame(player, map);
+			profiler.end(Profiler.Phase.RASTER);
+		} else {
+			float ambient = (float) Byte.toUnsignedInt(map.light) / 0xFF;
+			profiler.begin(Profiler.Phase.SKY);
+			this.drawSky(player, map.skybox, ambient);
+			profiler.end(Profiler.Phase.SKY);
+			profiler.begin(Profiler.Phase.FLOOR);
+			this.drawFloor(player, map.floorTexture, ambient);
+			profiler.end(Profiler.Phase.FLOOR);
+			profiler.begin(Profiler.Phase.COLUMNS);
+			this.drawColumns(player, map, ambient);
+			profiler.end(Profiler.Phase.COLUMNS);
+			profiler.begin(Profiler.Phase.WEAPON);
+			this.drawWeapon(player.weapon, player.weaponScale, player.paces);
+			profiler.end(Profiler.Phase.WEAPON);
+		}
+
+		if (profiler.isEnabled()) {
+			final Hits hits = this.mode == Mode.SOFTWARE ? this.tier.rasterizer.hits : this.tier.hits;
+			profiler.count(Profiler.Counter.RAYS, hits.size);
+			profiler.count(Profiler.Counter.CELLS, hits.traversed(0, hits.size));
+			profiler.count(Profiler.Counter.DRAW_CALLS, this.drawCalls);
+			if (profiler.overlay && this.shapeRenderer != null)
+				this.drawOverlay(profiler);
+		}
+	}
+
+	private void drawFrame(Player player, Map map) {
+		Canvas frame = this.tier.rasterizer.render(player, map, this.pool);
+		
+		// The whole frame reaches GL as a single upload and a single quad
+		if (this.batch != null) {
+			this.begin();
+			batch.draw(frame.upload(), 0, 0, this.viewportWidth, this.viewportHeight, 0, 0, frame.width, frame.height, false, true);
+			this.end();
+			this.profiler.count(Profiler.Counter.UPLOADED_BYTES, frame.width * frame.height * 4L);
+		}
 	}
 
 	private void drawSky(Player player, Map.SkyBox skybox, float ambient) {
-		drawFlat(player.direction, skybox.background, 4, true);
+		// Until the skybox is generated, a flat gradient stands in for it
+		if (skybox == null) {
+			shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
+			shapeRenderer.rect(0, 0, this.viewportWidth, this.viewportHeight / 2, ZENITH, ZENITH, HORIZON, HORIZON);
+			shapeRenderer.end();
+			this.drawCalls++;
+			return;
+		}
+		drawFlat(player.direction, skybox.background, 4, true, this.tier.sky);
 		
 		if (ambient > 0) {
 			Gdx.gl.glEnable(GL20.GL_BLEND);
@@ -82,13 +281,17 @@ public class Camera implements Disposable {
 			shapeRenderer.rect(0, 0, this.viewportWidth, this.viewportHeight / 2);
 			shapeRenderer.end();
 			Gdx.gl.glDisable(GL20.GL_BLEND);
+			this.drawCalls++;
 		}
 		
-		drawFlat(player.x, player.y, 50, player.direction, skybox.foreground, 2500, true);
+		if (skybox.clouds == null)
+			drawFlat(player.x, player.y, 50, player.direction, skybox.foreground, 2500, true, this.tier.clouds);
+		else
+			drawFlat(player.x, player.y, 50, player.direction, skybox.clouds.current, skybox.clouds.previous, skybox.clouds.fade, 2500, true, this.tier.clouds);
 	}
 
-	private void drawFloor(Player player, Texture texture, float ambient) {
-		drawFlat(player.x,player.y,player.direction, texture, 1, false);
+	private void drawFloor(Player player, Surface texture, float ambient) {
+		drawFlat(player.x,player.y,player.direction, texture, 1, false, this.tier.floor);
 		
 		Gdx.gl.glEnable(GL20.GL_BLEND);
 		Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
@@ -96,26 +299,28 @@ public class Camera implements Disposable {
 		shapeRenderer.rectLine(this.viewportWidth / 2, this.viewportHeight / 2, this.viewportWidth / 2, this.viewportHeight, this.viewportWidth, new Color(0, 0, 0, 1f - ambient), Color.CLEAR);
 		shapeRenderer.end();
 		Gdx.gl.glDisable(GL20.GL_BLEND);
+		this.drawCalls++;
 	}
 	
-	private void drawFlat(double angle, Texture texture, double scale, boolean flip) {
-		drawFlat(0,0,0,angle, texture, scale, flip);
+	private void drawFlat(double angle, Surface texture, double scale, boolean flip, Canvas canvas) {
+		drawFlat(0,0,0,angle, texture, scale, flip, canvas);
 	}
 	
-	private void drawFlat(double x, double y, double angle, Texture texture, double scale, boolean flip) {
-		drawFlat(x, y, 0, angle, texture, scale, flip);
+	private void drawFlat(double x, double y, double angle, Surface texture, double scale, boolean flip, Canvas canvas) {
+		drawFlat(x, y, 0, angle, texture, scale, flip, canvas);
 	}
 	
-	private void drawFlat(double px, double py, double pz, double angle, Texture texture, double scale, boolean flip) {
-		Pixmap buffer = new Pixmap(this.resolution, this.resolution, Pixmap.Format.RGBA8888);
-		buffer.setFilter(Pixmap.Filter.NearestNeighbour);
-		TextureData textureData = texture.getTextureData();
-		boolean isPrepared = textureData.isPrepared();
-		if (!isPrepared)
-			textureData.prepare();
-		Pixmap flat = textureData.consumePixmap();
-		
-		final int width = flat.getWidth(), height = flat.getHeight();
+	private void drawFlat(double px, double py, double pz, double angle, Surface texture, double scale, boolean flip, Canvas canvas) {
+		drawFlat(px, py, pz, angle, texture, null, 0, scale, flip, canvas);
+	}
+	
+	// Fades in from a previous texture of the same size when there is one, by a fade out of 0x100
+	private void drawFlat(double px, double py, double pz, double angle, Surface texture, Surface previous, int fade, double scale, boolean flip, Canvas canvas) {
+		final int width = texture.width, height = texture.height;
+		final int maskX = texture.maskX, maskY = texture.maskY;
+		final int[] texels = texture.pixels;
+		final int[] before = previous == null ? null : previous.pixels;
+		final double[] rows = this.tier.lens.row;
 		
 		final double size = Math.max(width, height) / Math.sqrt(scale);
 		
@@ -132,7 +337,7 @@ public class Camera implements Disposable {
 		final double scaleX = horizon * this.focalLength;
 		
 		for (int y = 0; y < horizon; y++) {
-			double distance = scaleY / (1 + y);
+			double distance = scaleY * rows[y];
 			double ratio = distance/scaleX;
 			
 			final double dx = -sin * ratio;
@@ -141,67 +346,194 @@ public class Camera implements Disposable {
 			double sx = tx + distance * cos - horizon * dx;
 			double sy = ty + distance * sin - horizon * dy;
 
-			for (int x = 0; x < this.resolution; x++, sx += dx, sy += dy)
-				buffer.drawPixel(x, y+horizon, flat.getPixel((int) MathTools.remainder(sx, width), (int) MathTools.remainder(sy, height)));
+			if (before != null) {
+				for (int x = 0; x < this.resolution; x++, sx += dx, sy += dy) {
+					final int i = maskX >= 0 && maskY >= 0
+						? (MathTools.floor(sy) & maskY) * width + (MathTools.floor(sx) & maskX)
+						: (int) MathTools.remainder(sy, height) * width + (int) MathTools.remainder(sx, width);
+					canvas.set(x, y+horizon, Clouds.mix(before[i], texels[i], fade));
+				}
+			} else if (maskX >= 0 && maskY >= 0) {
+				for (int x = 0; x < this.resolution; x++, sx += dx, sy += dy)
+					canvas.set(x, y+horizon, texels[(MathTools.floor(sy) & maskY) * width + (MathTools.floor(sx) & maskX)]);
+			} else {
+				for (int x = 0; x < this.resolution; x++, sx += dx, sy += dy)
+					canvas.set(x, y+horizon, texels[(int) MathTools.remainder(sy, height) * width + (int) MathTools.remainder(sx, width)]);
+			}
 		}
 		
-		if (!isPrepared)
-			flat.dispose();
-		
-		batch.begin();
-		batch.draw(new Texture(buffer, Pixmap.Format.RGBA8888, true), 0, 0, this.viewportWidth, this.viewportHeight, 0, 0, this.resolution, this.resolution, false, !flip);
-		batch.end();
-		buffer.dispose();
+		this.begin();
+		batch.draw(canvas.upload(), 0, 0, this.viewportWidth, this.viewportHeight, 0, 0, this.resolution, this.resolution, false, !flip);
+		this.end();
+		this.profiler.count(Profiler.Counter.UPLOADED_BYTES, canvas.width * canvas.height * 4L);
+	}
+
+	private void castColumns(Player player, Map map) {
+		if (this.pool == null) {
+			this.tier.caster.cast(map, player.x, player.y, player.direction, 0, this.resolution);
+		} else {
+			final int grain = Math.max(this.resolution / (this.threads * 4), 1);
+			this.pool.invoke(this.tier.caster.new Task(map, player.x, player.y, player.direction, 0, this.resolution, grain));
+		}
 	}
 
 	private void drawColumns(Player player, Map map, float ambient) {
+		this.castColumns(player, map);
+
+		Hits hits = this.tier.hits;
+		Atlas atlas = map.getWallAtlas();
+		Texture texture = atlas.surface.texture();
+		this.begin();
 		for (int column = 0; column < this.resolution; column++) {
-			double angle = TrigTools.atan2(2d * column / this.resolution - 1, this.focalLength);
-			Ray ray = new Ray(map, player.x, player.y, player.direction + angle, this.range);
-			Texture texture = map.wallTexture;
-			
 			int x = MathTools.floor(column * this.spacing);
 			int width = MathTools.ceil(this.spacing);
 
-			for (int hit = 0; hit < ray.steps.size(); hit++) {
-				if (ray.steps.get(hit).height > 0) {
-					Ray.Step step = ray.steps.get(hit);
-					
-					int srcX = MathTools.floor(texture.getWidth() * step.offset);
-					int srcY = 0;
-					int srcWidth = 1;
-					int srcHeight = texture.getHeight();
-					
-					Projection wall = new Projection(angle, step.distance, step.height);
-					int y = this.alias(wall.y);
-					int height = this.alias(wall.height);
-
-					batch.begin();
-					batch.draw(texture, x, y, width, height, srcX, srcY, srcWidth, srcHeight, false, true);
-					batch.end();
-
-					Gdx.gl.glEnable(GL20.GL_BLEND);
-					Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
-					shapeRenderer.setColor(0, 0, 0, (float) MathTools.clamp((step.distance + step.shading) / this.lightRange - ambient, 0d, 1d));
-					shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
-					shapeRenderer.rect(x, y, width, height);
-					shapeRenderer.end();
-					Gdx.gl.glDisable(GL20.GL_BLEND);
-
-					break;
+			// Walls further back are only drawn down to the top of the nearer wall in front of them
+			for (int layer = 0; layer < hits.count[column]; layer++) {
+				int index = hits.index(column, layer);
+				double distance = hits.distance[index];
+				// Every material is a region of the one atlas texture, so the batch never switches textures
+				int region = map.getMaterial(hits.height[index]);
+				int srcX = atlas.regionX[region] + MathTools.floor(atlas.regionWidth[region] * hits.offset[index]);
+				int srcY = atlas.regionY[region];
+				int srcWidth = 1;
+				int srcHeight = atlas.regionHeight[region];
+
+				Projection wall = this.wall.project(column, distance, hits.height[index]);
+				int y = this.alias(wall.y);
+				int height = this.alias(wall.height);
+				if (layer > 0) {
+					int clip = this.alias(this.viewportHeight / 2 * (1 - hits.clip[index])) - y;
+					if (clip <= 0)
+						continue;
+					if (clip < height) {
+						srcHeight = MathTools.ceil((double) srcHeight * clip / height);
+						height = clip;
+					}
 				}
+
+				// Shading is baked into the vertex color instead of blending a dark quad over the slice
+				float light = 1f - (float) MathTools.clamp((distance + hits.shading[index]) / this.lightRange - ambient, 0d, 1d);
+				light = Math.min(light + Byte.toUnsignedInt(hits.light[index]) / 255f, 1f);
+				batch.setColor(light, light, light, 1f);
+				batch.draw(texture, x, y, width, height, srcX, srcY, srcWidth, srcHeight, false, true);
 			}
 		}
+
+		// Sprites come from the same atlas, so they share the batch with the walls
+		this.profiler.begin(Profiler.Phase.SPRITES);
+		this.drawSprites(player, map, atlas, texture, ambient);
+		this.profiler.end(Profiler.Phase.SPRITES);
+		batch.setColor(Color.WHITE);
+		this.end();
 	}
 
-	private void drawWeapon(Texture weapon, double scale, double paces) {
+	private void drawSprites(Player player, Map map, Atlas atlas, Texture texture, float ambient) {
+		Hits hits = this.tier.hits;
+		Sprites sprites = this.tier.sprites;
+		Entities entities = map.entities;
+		entities.cull(player.x, player.y, player.direction, this.focalLength, this.range, this.resolution, sprites);
+
+		for (int n = 0; n < sprites.count; n++) {
+			int sprite = sprites.get(n);
+			int id = sprites.id[sprite];
+			double z = sprites.z[sprite];
+			double left = sprites.center[sprite] - sprites.half[sprite];
+			double span = sprites.half[sprite] * 2;
+			int first = Math.max(MathTools.ceil(left), 0);
+			int last = Math.min(MathTools.ceil(left + span), this.resolution);
+
+			int region = entities.material[id];
+			int height = this.alias(this.viewportHeight * entities.scale[id] / z);
+			int y = this.alias(this.viewportHeight / 2 * (1 + 1 / z)) - height;
+			float light = 1f - (float) MathTools.clamp(z / this.lightRange - ambient, 0d, 1d);
+			batch.setColor(light, light, light, 1f);
+
+			// Each run of columns showing the same rows of the sprite above the walls in front of it goes out as one quad
+			int run = -1, shown = 0;
+			for (int column = first; column <= last; column++) {
+				int visible = column < last ? MathTools.clamp(this.occluder(column, z) - y, 0, height) : 0;
+				if (run >= 0 && visible != shown) {
+					int x = MathTools.floor(run * this.spacing);
+					int width = MathTools.floor(column * this.spacing) - x;
+					int srcX = atlas.regionX[region] + MathTools.floor((run - left) / span * atlas.regionWidth[region]);
+					int srcWidth = Math.max(MathTools.ceil((column - run) / span * atlas.regionWidth[region]), 1);
+					int srcHeight = shown == height ? atlas.regionHeight[region] : MathTools.ceil((double) atlas.regionHeight[region] * shown / height);
+					batch.draw(texture, x, y, width, shown, srcX, atlas.regionY[region], srcWidth, srcHeight, false, true);
+					run = -1;
+				}
+				if (visible > 0 && run < 0) {
+					run = column;
+					shown = visible;
+				}
+			}
+		}
+	}
+
+	// The first row of the column hidden by walls at or in front of depth z, the top of the furthest of them,
+	// as each is drawn down to the one in front
+	private int occluder(int column, double z) {
+		Hits hits = this.tier.hits;
+		int row = this.viewportHeight;
+		for (int layer = 0; layer < hits.count[column]; layer++) {
+			int index = hits.index(column, layer);
+			if (hits.distance[index] * hits.cos[column] > z)
+				break;
+			row = Math.min(row, this.alias(this.wall.project(column, hits.distance[index], hits.height[index]).y));
+		}
+		return row;
+	}
+
+	private void drawWeapon(Surface surface, double scale, double paces) {
+		Texture weapon = surface.texture();
 		int width = this.alias(this.viewportHeight * scale * weapon.getWidth() / weapon.getHeight());
 		int height = this.alias(this.viewportHeight * scale);
 		int x = this.alias((this.viewportWidth - width / 2) - TrigTools.sin(paces) * width / 4);
 		int y = this.alias((this.viewportHeight - height / 2) - TrigTools.cos(paces * 2) * height / 4);
-		batch.begin();
+		this.begin();
 		batch.draw(weapon, x, y, width, height, 0, 0, weapon.getWidth(), weapon.getHeight(), false, true);
+		this.end();
+	}
+
+	// Stacked bars of each phase over the last frames, oldest on the left, with a line at the 60 fps budget
+	private void drawOverlay(Profiler profiler) {
+		final float width = this.viewportWidth / 4f;
+		final float height = this.viewportHeight / 4f;
+		final float bar = width / Profiler.HISTORY;
+		final float scale = height / 33.3f;
+
+		Gdx.gl.glEnable(GL20.GL_BLEND);
+		Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+		shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
+		shapeRenderer.setColor(0, 0, 0, 0.5f);
+		shapeRenderer.rect(0, this.viewportHeight - height, width, height);
+		for (int i = 0; i < Profiler.HISTORY; i++) {
+			final int slot = (profiler.frame + i) % Profiler.HISTORY;
+			float y = this.viewportHeight;
+			for (int phase = 0; phase < Profiler.PHASES.length; phase++) {
+				final float h = Math.min(profiler.history[phase][slot] * scale, y - (this.viewportHeight - height));
+				shapeRenderer.setColor(OVERLAY[phase]);
+				shapeRenderer.rect(i * bar, y - h, bar, h);
+				y -= h;
+			}
+		}
+		shapeRenderer.setColor(Color.WHITE);
+		shapeRenderer.rect(0, this.viewportHeight - 16.7f * scale, width, 1);
+		shapeRenderer.end();
+		Gdx.gl.glDisable(GL20.GL_BLEND);
+	}
+
+	private void begin() {
+		batch.begin();
+	}
+
+	private void end() {
 		batch.end();
+		this.drawCalls += batch.renderCalls;
+	}
+
+	public int getDrawCalls() {
+		return this.drawCalls;
 	}
 
 	private int alias(double d) {
@@ -211,7 +543,13 @@ public class Camera implements Disposable {
 
 	@Override
 	public void dispose() {
-		this.batch.dispose();
-		this.shapeRenderer.dispose();
+		if (this.batch != null) {
+			this.batch.dispose();
+			this.shapeRenderer.dispose();
+		}
+		for (Tier tier : this.tiers)
+			tier.dispose();
+		if (this.pool != null)
+			this.pool.shutdown();
 	}
 }
@@ -0,0 +1,47 @@
+package com.raycaster;
+
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+
+public class Canvas implements Disposable {
+	protected final int width;
+	protected final int height;
+	protected final IntBuffer pixels;
+
+	private Pixmap buffer;
+	private Texture texture;
+
+	public Canvas(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.buffer = new Pixmap(this.width, this.height, Pixmap.Format.RGBA8888);
+		this.buffer.setFilter(Pixmap.Filter.NearestNeighbour);
+		this.pixels = this.buffer.getPixels().order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+	}
+
+	public void set(int x, int y, int color) {
+		this.pixels.put(y * this.width + x, color);
+	}
+
+	public Pixmap getPixmap() {
+		return this.buffer;
+	}
+
+	public Texture upload() {
+		if (this.texture == null)
+			this.texture = new Texture(this.buffer, Pixmap.Format.RGBA8888, false);
+		else
+			this.texture.draw(this.buffer, 0, 0);
+		return this.texture;
+	}
+
+	@Override
+	public void dispose() {
+		if (this.texture != null)
+			this.texture.dispose();
+		this.buffer.dispose();
+	}
+}
@@ -0,0 +1,171 @@
+package com.raycaster;
+
+import java.util.concurrent.RecursiveAction;
+import com.github.tommyettinger.digital.MathTools;
+import com.github.tommyettinger.digital.TrigTools;
+
+public class Caster {
+	protected class Task extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		protected final Map map;
+		protected final double x;
+		protected final double y;
+		protected final double direction;
+		protected final int from;
+		protected final int to;
+		protected final int grain;
+
+		public Task(Map map, double x, double y, double direction, int from, int to, int grain) {
+			this.map = map;
+			this.x = x;
+			this.y = y;
+			this.direction = direction;
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from <= this.grain) {
+				cast(this.map, this.x, this.y, this.direction, this.from, this.to);
+			} else {
+				final int middle = (this.from + this.to) >>> 1;
+				invokeAll(
+					new Task(this.map, this.x, this.y, this.direction, this.from, middle, this.grain),
+					new Task(this.map, this.x, this.y, this.direction, middle, this.to, this.grain)
+				);
+			}
+		}
+	}
+
+	protected final Hits hits;
+	protected double range;
+
+	public Caster(Hits hits, double range) {
+		this.hits = hits;
+		this.range = range;
+	}
+
+	public void cast(Map map, double x, double y, double direction, int from, int to) {
+		for (int column = from; column < to; column++)
+			this.cast(map, x, y, direction, column);
+	}
+
+	public boolean cast(Map map, double x, double y, double direction, int column) {
+		final Hits hits = this.hits;
+		final double angle = direction + hits.angle[column];
+		final double sin = TrigTools.sin(angle);
+		final double cos = TrigTools.cos(angle);
+		final double inverseCos = 1 / cos;
+		final double inverseSin = 1 / sin;
+		final int stepX = cos < 0 ? -1 : 1;
+		final int stepY = sin < 0 ? -1 : 1;
+
+		int cellX = MathTools.floor(x);
+		int cellY = MathTools.floor(y);
+
+		// Distances are measured from the origin at every boundary rather than accumulated,
+		// so a hit lands on the same value no matter how the ray got there
+		double sideX = cos == 0 ? Double.POSITIVE_INFINITY : ((stepX > 0 ? cellX + 1 : cellX) - x) * inverseCos;
+		double sideY = sin == 0 ? Double.POSITIVE_INFINITY : ((stepY > 0 ? cellY + 1 : cellY) - y) * inverseSin;
+
+		// Walls are collected front to back. The horizon is the highest top drawn so far, as
+		// (2 * height - 1) / z, which reaches 1 at the top of the screen. Only walls that rise above
+		// it are kept, and each remembers the horizon below it as its clip
+		final int base = column * hits.layers;
+		final double depth = hits.cos[column];
+		final int tallest = map.getMaxHeight();
+		final Pyramid pyramid = map.pyramid;
+		double horizon = Double.NEGATIVE_INFINITY;
+		int layers = 0;
+		int cells = 0;
+		while (true) {
+			final double distance;
+			final boolean vertical;
+			final int empty = pyramid.empty(cellX, cellY);
+			if (empty > 0) {
+				// Leave the whole empty block at once. The cell on the far side is found from the same
+				// boundary distances the walk compares, so it lands exactly where the walk would have
+				final int size = 1 << empty;
+				final int left = cellX & -size, top = cellY & -size;
+				final double exitX = cos == 0 ? Double.POSITIVE_INFINITY : ((stepX > 0 ? left + size : left) - x) * inverseCos;
+				final double exitY = sin == 0 ? Double.POSITIVE_INFINITY : ((stepY > 0 ? top + size : top) - y) * inverseSin;
+				vertical = exitX < exitY;
+				if (vertical) {
+					distance = exitX;
+					if (sin != 0) {
+						int cy = MathTools.floor(y + distance * sin);
+						cy = stepY > 0 ? MathTools.clamp(cy, cellY, top + size - 1) : MathTools.clamp(cy, top, cellY);
+						while (cy != cellY && ((stepY > 0 ? cy : cy + 1) - y) * inverseSin > distance)
+							cy -= stepY;
+						while (((stepY > 0 ? cy + 1 : cy) - y) * inverseSin <= distance)
+							cy += stepY;
+						cellY = cy;
+						sideY = ((stepY > 0 ? cellY + 1 : cellY) - y) * inverseSin;
+					}
+					cellX = stepX > 0 ? left + size : left - 1;
+					sideX = ((stepX > 0 ? cellX + 1 : cellX) - x) * inverseCos;
+				} else {
+					distance = exitY;
+					if (cos != 0) {
+						int cx = MathTools.floor(x + distance * cos);
+						cx = stepX > 0 ? MathTools.clamp(cx, cellX, left + size - 1) : MathTools.clamp(cx, left, cellX);
+						while (cx != cellX && ((stepX > 0 ? cx : cx + 1) - x) * inverseCos >= distance)
+							cx -= stepX;
+						while (((stepX > 0 ? cx + 1 : cx) - x) * inverseCos < distance)
+							cx += stepX;
+						cellX = cx;
+						sideX = ((stepX > 0 ? cellX + 1 : cellX) - x) * inverseCos;
+					}
+					cellY = stepY > 0 ? top + size : top - 1;
+					sideY = ((stepY > 0 ? cellY + 1 : cellY) - y) * inverseSin;
+				}
+			} else {
+				vertical = sideX < sideY;
+				if (vertical) {
+					cellX += stepX;
+					distance = sideX;
+					sideX = ((stepX > 0 ? cellX + 1 : cellX) - x) * inverseCos;
+				} else {
+					cellY += stepY;
+					distance = sideY;
+					sideY = ((stepY > 0 ? cellY + 1 : cellY) - y) * inverseSin;
+				}
+			}
+			cells++;
+
+			if (distance >= this.range)
+				break;
+
+			final int height = map.get(cellX, cellY);
+			if (height > 0) {
+				final double top = (2 * height - 1) / (distance * depth);
+				if (top > horizon) {
+					final int index = base + layers++;
+					final double offset = vertical ? y + distance * sin : x + distance * cos;
+					hits.distance[index] = distance;
+					hits.offset[index] = offset - Math.floor(offset);
+					hits.clip[index] = horizon;
+					hits.shading[index] = (byte) (vertical ? (cos < 0 ? 2 : 0) : (sin < 0 ? 2 : 1));
+					// A face is lit by the open cell in front of it, the one the ray just left
+					hits.light[index] = (byte) (vertical ? map.getLight(cellX - stepX, cellY) : map.getLight(cellX, cellY - stepY));
+					hits.height[index] = height;
+					hits.cellX[index] = cellX;
+					hits.cellY[index] = cellY;
+					horizon = top;
+				}
+				// Nothing behind a wall of the map's greatest height can show above it
+				if (height >= tallest || horizon >= 1 || layers == hits.layers || !map.contains(cellX, cellY))
+					break;
+			}
+		}
+
+		if (layers == 0)
+			hits.distance[base] = this.range;
+		hits.count[column] = layers;
+		hits.cells[column] = cells;
+		return layers > 0;
+	}
+}
@@ -0,0 +1,217 @@
+package com.raycaster;
+
+import java.util.Arrays;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.utils.Disposable;
+import com.github.tommyettinger.digital.TrigTools;
+
+// The cloud layer drifting through time along the noise's z axis. Each keyframe is regenerated a few rows
+// per frame within a budget, while the layer fades from the previous keyframe to the current one. The
+// fade ends just as the next keyframe is complete, so the animation never stalls or jumps
+public class Clouds implements Disposable {
+	protected static final float STEP = 0.1f;
+	protected static final int FADE = 0x100;
+	// Microseconds of each frame that can go to the next keyframe
+	protected static final long DEFAULT_BUDGET = 500;
+
+	protected final int width;
+	protected final int height;
+	protected final int depth;
+	protected final float gain;
+	protected final float clip;
+	protected final Color tint;
+	protected final Noise noise;
+	protected long budget;
+
+	protected Surface previous;
+	protected Surface current;
+	protected int fade;
+
+	private Surface next;
+	private int row;
+	private int keyframe;
+	private final float[][] columnX;
+	private final float[][] columnY;
+	private final float[] octave;
+	private final float[] sum;
+	private final int alpha;
+	private float minimum;
+	private float maximum;
+	private float low;
+	private float high;
+
+	private long rowCost;
+	private long cost;
+	private long worst;
+	private long swapped;
+	private double rate;
+
+	public Clouds(int width, int height, int depth, float gain, float clip, Color tint, Noise noise, long budget) {
+		this.width = width;
+		this.height = height;
+		this.depth = depth;
+		this.gain = gain;
+		this.clip = clip;
+		this.tint = new Color(tint);
+		this.noise = noise;
+		this.budget = budget;
+		this.alpha = (int) (tint.a * 255);
+
+		// Points on the circle for every column at every octave, so a row only costs the noise itself
+		final int octaves = depth + 1;
+		this.columnX = new float[octaves][width];
+		this.columnY = new float[octaves][width];
+		for (int n = 0, frequency = 1; n < octaves; n++, frequency *= 2) {
+			for (int x = 0; x < width; x++) {
+				final float dx = (float) x * (float) frequency / (float) width * TrigTools.TAU;
+				this.columnX[n][x] = TrigTools.sin(dx);
+				this.columnY[n][x] = TrigTools.cos(dx);
+			}
+		}
+		this.octave = new float[width];
+		this.sum = new float[width];
+
+		// The first two keyframes are generated whole, the first one twice: once to measure its range,
+		// which it and the second are shaded with, and again to shade it
+		this.previous = this.surface();
+		this.current = this.surface();
+		this.next = this.surface();
+		this.low = Float.POSITIVE_INFINITY;
+		this.high = Float.NEGATIVE_INFINITY;
+		for (int y = 0; y < height; y++)
+			this.generate(null, y, 0);
+		this.minimum = this.low;
+		this.maximum = this.high;
+		final long start = System.nanoTime();
+		this.generate(this.previous, 0);
+		this.rowCost = (System.nanoTime() - start) / height;
+		// Keyframe 1 is measured on its own and hands its range on to keyframe 2, as swap does for the rest
+		this.low = Float.POSITIVE_INFINITY;
+		this.high = Float.NEGATIVE_INFINITY;
+		this.generate(this.current, 1);
+		this.minimum = this.low;
+		this.maximum = this.high;
+		this.low = Float.POSITIVE_INFINITY;
+		this.high = Float.NEGATIVE_INFINITY;
+		this.keyframe = 2;
+		this.swapped = System.nanoTime();
+	}
+
+	private Surface surface() {
+		Pixmap pixmap = new Pixmap(this.width, this.height, Pixmap.Format.RGBA8888);
+		pixmap.setFilter(Pixmap.Filter.NearestNeighbour);
+		return new Surface(pixmap);
+	}
+
+	public void setBudget(long micros) {
+		this.budget = micros;
+	}
+
+	// Once per frame on the render thread: as many rows of the next keyframe as fit in the budget,
+	// judged by what a row has cost so far. There is always at least one, so a budget smaller than a
+	// row slows the clouds down rather than freezing them
+	public void update() {
+		final long start = System.nanoTime();
+		final long budget = this.budget * 1000;
+		long now = start;
+		do {
+			this.generate(this.next, this.row, this.keyframe);
+			final long finished = System.nanoTime();
+			this.rowCost += (finished - now - this.rowCost) / 8;
+			now = finished;
+			if (++this.row == this.height)
+				this.swap(now);
+		} while (now - start + this.rowCost <= budget);
+		this.fade = this.row * FADE / this.height;
+
+		final long cost = now - start;
+		this.cost += (cost - this.cost) / 8;
+		this.worst = Math.max(this.worst, cost);
+	}
+
+	private void swap(long now) {
+		final Surface oldest = this.previous;
+		this.previous = this.current;
+		this.current = this.next;
+		this.next = oldest;
+		this.row = 0;
+		this.keyframe++;
+		this.minimum = this.low;
+		this.maximum = this.high;
+		this.low = Float.POSITIVE_INFINITY;
+		this.high = Float.NEGATIVE_INFINITY;
+		this.rate = 1e9 / (now - this.swapped);
+		this.swapped = now;
+	}
+
+	private void generate(Surface surface, int keyframe) {
+		for (int y = 0; y < this.height; y++)
+			this.generate(surface, y, keyframe);
+	}
+
+	// Each octave is normalised as if the noise spanned -1 to 1 rather than by its actual range, which is
+	// only known once the whole keyframe is done. The sum is then shaded with the range of the keyframe before
+	private void generate(Surface surface, int y, int keyframe) {
+		final float time = keyframe * STEP;
+		final float[] sum = this.sum, octave = this.octave;
+		Arrays.fill(sum, 0f);
+		for (int n = 0, frequency = 1; n <= this.depth; n++, frequency *= 2) {
+			final float dy = (float) y * (float) frequency / (float) this.height * TrigTools.TAU;
+			this.noise.noise(this.columnX[n], this.columnY[n], TrigTools.sin(dy) + time, TrigTools.cos(dy), octave, 0, this.width);
+			for (int x = 0; x < this.width; x++)
+				sum[x] += (octave[x] + 1f) * 0.5f / frequency;
+		}
+		float low = this.low, high = this.high;
+		for (int x = 0; x < this.width; x++) {
+			low = Math.min(low, sum[x]);
+			high = Math.max(high, sum[x]);
+		}
+		this.low = low;
+		this.high = high;
+		if (surface == null)
+			return;
+		final int[] pixels = surface.pixels;
+		for (int x = 0, i = y * this.width; x < this.width; x++, i++)
+			pixels[i] = Noise.pixel(sum[x], this.minimum, this.maximum, this.gain, this.clip, this.tint, this.alpha);
+	}
+
+	// Both keyframes weighted by a fade out of 0x100
+	public static int mix(int from, int to, int fade) {
+		final int inverse = FADE - fade;
+		final int r = (((from >>> 24) & 0xFF) * inverse + ((to >>> 24) & 0xFF) * fade) >> 8;
+		final int g = (((from >>> 16) & 0xFF) * inverse + ((to >>> 16) & 0xFF) * fade) >> 8;
+		final int b = (((from >>> 8) & 0xFF) * inverse + ((to >>> 8) & 0xFF) * fade) >> 8;
+		final int a = ((from & 0xFF) * inverse + (to & 0xFF) * fade) >> 8;
+		return r << 24 | g << 16 | b << 8 | a;
+	}
+
+	// Keyframes completed per second, measured over the last one
+	public double getRate() {
+		return this.rate;
+	}
+
+	// Microseconds spent in update per frame, averaged over the last few
+	public double getCost() {
+		return this.cost / 1e3;
+	}
+
+	public double getWorst() {
+		return this.worst / 1e3;
+	}
+
+	public long getBudget() {
+		return this.budget;
+	}
+
+	public float getProgress() {
+		return (float) this.row / this.height;
+	}
+
+	@Override
+	public void dispose() {
+		this.previous.dispose();
+		this.current.dispose();
+		this.next.dispose();
+	}
+}
@@ -8,9 +8,16 @@ public class Controls {
 	protected int x;
 
 	public Controls() {
+		this(true);
+	}
+
+	// Controls that are only ever filled in by a Recording never touch the input backend
+	public Controls(boolean capture) {
 		this.reset();
-		Gdx.input.setCursorCatched(true);
-		Gdx.input.setCursorPosition(x, 0);
+		if (capture) {
+			Gdx.input.setCursorCatched(true);
+			Gdx.input.setCursorPosition(x, 0);
+		}
 	}
 
 	public void update() {
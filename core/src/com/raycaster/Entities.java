@@ -0,0 +1,193 @@
+package com.raycaster;
+
+import java.util.Arrays;
+import com.badlogic.gdx.utils.LongMap;
+import com.github.tommyettinger.digital.MathTools;
+import com.github.tommyettinger.digital.TrigTools;
+
+// Billboards on the map, bucketed in a uniform grid so culling only visits buckets near the view cone.
+// Buckets are kept in pages of 64x64, made when an entity first enters one and dropped when the last leaves
+public class Entities {
+	protected static final int SHIFT = 3;
+	protected static final int PAGE = 6;
+	protected static final int MASK = (1 << PAGE) - 1;
+	// The last slot of a page counts the entities in it
+	protected static final int COUNT = 1 << PAGE * 2;
+	protected static final int NONE = -1;
+	protected static final int CAPACITY = 64;
+
+	protected final int width;
+	protected final int height;
+	protected final int bucketsX;
+	protected final int bucketsY;
+	protected final LongMap<int[]> heads;
+
+	protected int count;
+	protected int size;
+	protected double[] x;
+	protected double[] y;
+	protected double[] scale;
+	protected int[] material;
+	protected long[] bucket;
+	protected int[] next;
+	protected int[] previous;
+
+	private int free = NONE;
+
+	public Entities(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.bucketsX = (width >> SHIFT) + 1;
+		this.bucketsY = (height >> SHIFT) + 1;
+		this.heads = new LongMap<int[]>();
+
+		this.x = new double[CAPACITY];
+		this.y = new double[CAPACITY];
+		this.scale = new double[CAPACITY];
+		this.material = new int[CAPACITY];
+		this.bucket = new long[CAPACITY];
+		this.next = new int[CAPACITY];
+		this.previous = new int[CAPACITY];
+	}
+
+	// Ids of removed entities are reused, so an id is only valid until it is removed
+	public int add(double x, double y, int material, double scale) {
+		final int id;
+		if (this.free != NONE) {
+			id = this.free;
+			this.free = this.next[id];
+		} else {
+			if (this.size == this.x.length)
+				this.grow(this.size * 2);
+			id = this.size++;
+		}
+		this.x[id] = x;
+		this.y[id] = y;
+		this.material[id] = material;
+		this.scale[id] = scale;
+		this.link(id, this.bucket(x, y));
+		this.count++;
+		return id;
+	}
+
+	public void move(int id, double x, double y) {
+		this.x[id] = x;
+		this.y[id] = y;
+		final long bucket = this.bucket(x, y);
+		if (bucket != this.bucket[id]) {
+			this.unlink(id);
+			this.link(id, bucket);
+		}
+	}
+
+	public void remove(int id) {
+		this.unlink(id);
+		this.bucket[id] = NONE;
+		this.next[id] = this.free;
+		this.free = id;
+		this.count--;
+	}
+
+	public int size() {
+		return this.count;
+	}
+
+	private void grow(int capacity) {
+		this.x = Arrays.copyOf(this.x, capacity);
+		this.y = Arrays.copyOf(this.y, capacity);
+		this.scale = Arrays.copyOf(this.scale, capacity);
+		this.material = Arrays.copyOf(this.material, capacity);
+		this.bucket = Arrays.copyOf(this.bucket, capacity);
+		this.next = Arrays.copyOf(this.next, capacity);
+		this.previous = Arrays.copyOf(this.previous, capacity);
+	}
+
+	protected long bucket(double x, double y) {
+		final int bx = MathTools.clamp(MathTools.floor(x) >> SHIFT, 0, this.bucketsX - 1);
+		final int by = MathTools.clamp(MathTools.floor(y) >> SHIFT, 0, this.bucketsY - 1);
+		return (long) by << 32 | bx;
+	}
+
+	private static long page(long bucket) {
+		return (bucket >> 32 >> PAGE) << 32 | (int) bucket >> PAGE;
+	}
+
+	private static int slot(long bucket) {
+		return ((int) (bucket >> 32) & MASK) << PAGE | (int) bucket & MASK;
+	}
+
+	private void link(int id, long bucket) {
+		int[] page = this.heads.get(page(bucket));
+		if (page == null) {
+			page = new int[COUNT + 1];
+			Arrays.fill(page, 0, COUNT, NONE);
+			this.heads.put(page(bucket), page);
+		}
+		final int head = page[slot(bucket)];
+		this.bucket[id] = bucket;
+		this.previous[id] = NONE;
+		this.next[id] = head;
+		if (head != NONE)
+			this.previous[head] = id;
+		page[slot(bucket)] = id;
+		page[COUNT]++;
+	}
+
+	private void unlink(int id) {
+		final int previous = this.previous[id], next = this.next[id];
+		final int[] page = this.heads.get(page(this.bucket[id]));
+		if (previous != NONE)
+			this.next[previous] = next;
+		else
+			page[slot(this.bucket[id])] = next;
+		if (next != NONE)
+			this.previous[next] = previous;
+		if (--page[COUNT] == 0)
+			this.heads.remove(page(this.bucket[id]));
+	}
+
+	// Collects the entities in front of the camera and inside its field of view into sprites, nearest last.
+	// Only the buckets under the bounding box of the view cone are visited.
+	public void cull(double px, double py, double direction, double focalLength, double range, int columns, Sprites sprites) {
+		sprites.count = 0;
+		final double sin = TrigTools.sin(direction);
+		final double cos = TrigTools.cos(direction);
+		final double spread = 1 / focalLength;
+
+		// The cone's corners sit at the range along each edge, its half width at the far end is range * spread
+		final double farX = px + cos * range, farY = py + sin * range;
+		final double sideX = -sin * range * spread, sideY = cos * range * spread;
+		final double margin = 1;
+		final double minX = Math.min(px, Math.min(farX + sideX, farX - sideX)) - margin;
+		final double maxX = Math.max(px, Math.max(farX + sideX, farX - sideX)) + margin;
+		final double minY = Math.min(py, Math.min(farY + sideY, farY - sideY)) - margin;
+		final double maxY = Math.max(py, Math.max(farY + sideY, farY - sideY)) + margin;
+
+		final int fromX = MathTools.clamp(MathTools.floor(minX) >> SHIFT, 0, this.bucketsX - 1);
+		final int toX = MathTools.clamp(MathTools.floor(maxX) >> SHIFT, 0, this.bucketsX - 1);
+		final int fromY = MathTools.clamp(MathTools.floor(minY) >> SHIFT, 0, this.bucketsY - 1);
+		final int toY = MathTools.clamp(MathTools.floor(maxY) >> SHIFT, 0, this.bucketsY - 1);
+
+		final double half = columns / 2d;
+		for (int by = fromY; by <= toY; by++) {
+			for (int bx = fromX; bx <= toX; bx++) {
+				final long bucket = (long) by << 32 | bx;
+				final int[] page = this.heads.get(page(bucket));
+				if (page == null)
+					continue;
+				for (int id = page[slot(bucket)]; id != NONE; id = this.next[id]) {
+					final double dx = this.x[id] - px, dy = this.y[id] - py;
+					final double z = dx * cos + dy * sin;
+					if (z <= Sprites.NEAR || z >= range)
+						continue;
+					final double side = dy * cos - dx * sin;
+					final double radius = this.scale[id] / 2;
+					if (Math.abs(side) - radius > z * spread)
+						continue;
+					sprites.add(id, z, half * (1 + focalLength * side / z), half * focalLength * radius / z);
+				}
+			}
+		}
+		sprites.sort();
+	}
+}
@@ -0,0 +1,192 @@
+package com.raycaster;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.PixmapIO;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.github.tommyettinger.digital.MathTools;
+import com.github.tommyettinger.digital.TrigTools;
+
+// Renders many views of one map off screen with no GL context. Each frame gets its own rasterizer,
+// so jobs only share the map and its textures, which they read and never write, and finished frames
+// are written out as PNG on a separate pool while the next ones render
+public class Farm implements Disposable {
+	public static class Pose {
+		protected final double x;
+		protected final double y;
+		protected final double direction;
+		protected final int fov;
+		protected final int width;
+		protected final int height;
+
+		public Pose(double x, double y, double direction, int fov, int width, int height) {
+			this.x = x;
+			this.y = y;
+			this.direction = direction;
+			this.fov = fov;
+			this.width = width;
+			this.height = height;
+		}
+	}
+
+	public static class Report {
+		protected final int frames;
+		protected final long nanos;
+		protected final int cores;
+		protected final boolean virtual;
+
+		public Report(int frames, long nanos, int cores, boolean virtual) {
+			this.frames = frames;
+			this.nanos = nanos;
+			this.cores = cores;
+			this.virtual = virtual;
+		}
+
+		public double getFramesPerSecond() {
+			return this.frames * 1e9 / Math.max(this.nanos, 1);
+		}
+
+		public double getFramesPerSecondPerCore() {
+			return this.getFramesPerSecond() / this.cores;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d frames in %.3f s on %d cores (%s)  %.1f fps  %.1f fps/core", this.frames, this.nanos / 1e9,
+				this.cores, this.virtual ? "virtual threads" : "thread pool", this.getFramesPerSecond(), this.getFramesPerSecondPerCore());
+		}
+	}
+
+	protected final Map map;
+	protected final Surface weapon;
+	protected final int threads;
+	protected final boolean virtual;
+	protected double range;
+	protected double lightRange;
+
+	private final ExecutorService renderers;
+	private final ExecutorService encoders;
+
+	public Farm(Map map) {
+		this(map, Runtime.getRuntime().availableProcessors());
+	}
+
+	public Farm(Map map, int threads) {
+		this.map = map;
+		this.weapon = new Surface(Gdx.files.internal("hand.png"));
+		this.threads = Math.max(threads, 1);
+		this.range = 32;
+		this.lightRange = 16;
+		ExecutorService renderers = virtualThreads();
+		this.virtual = renderers != null;
+		this.renderers = this.virtual ? renderers : Executors.newFixedThreadPool(this.threads, Farm::daemon);
+		this.encoders = Executors.newFixedThreadPool(Math.max(this.threads / 2, 1), Farm::daemon);
+	}
+
+	// Virtual threads are only there from Java 21 on, and the sources stay on Java 8, so they are looked up by name
+	private static ExecutorService virtualThreads() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+	private static Thread daemon(Runnable runnable) {
+		Thread thread = new Thread(runnable, "farm");
+		thread.setDaemon(true);
+		return thread;
+	}
+
+	public void setRange(double range) {
+		this.range = range;
+	}
+
+	// Renders every pose and writes it to the directory as frame00000.png onwards, returning once all are on disk
+	public Report render(List<Pose> poses, FileHandle directory) {
+		directory.mkdirs();
+		// Packed up front, so no job builds the atlas while another reads it
+		this.map.getWallAtlas();
+
+		// Bounds the frames held in memory, rendered or waiting for the encoder, however many jobs are queued
+		final Semaphore frames = new Semaphore(this.threads * 2);
+		final CountDownLatch done = new CountDownLatch(poses.size());
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final long start = System.nanoTime();
+		int submitted = 0;
+		for (; submitted < poses.size() && failure.get() == null; submitted++) {
+			final int i = submitted;
+			final Pose pose = poses.get(i);
+			final FileHandle file = directory.child(String.format("frame%05d.png", i));
+			frames.acquireUninterruptibly();
+			this.renderers.execute(() -> {
+				Rasterizer rasterizer = null;
+				try {
+					rasterizer = this.render(pose);
+				} catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				}
+				if (rasterizer == null) {
+					frames.release();
+					done.countDown();
+					return;
+				}
+				final Rasterizer finished = rasterizer;
+				this.encoders.execute(() -> {
+					try {
+						PixmapIO.writePNG(file, finished.canvas.getPixmap(), Deflater.BEST_SPEED, false);
+					} catch (Throwable e) {
+						failure.compareAndSet(null, e);
+					} finally {
+						finished.dispose();
+						frames.release();
+						done.countDown();
+					}
+				});
+			});
+		}
+		// Jobs never started after a failure are counted off, the ones already running are waited for
+		for (int i = submitted; i < poses.size(); i++)
+			done.countDown();
+		try {
+			done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new GdxRuntimeException("Interrupted while rendering", e);
+		}
+		if (failure.get() != null)
+			throw new GdxRuntimeException("Could not render to " + directory, failure.get());
+		// Virtual threads run on one carrier per core whatever the thread count
+		final int processors = Runtime.getRuntime().availableProcessors();
+		final int cores = this.virtual ? processors : Math.min(this.threads, processors);
+		return new Report(poses.size(), System.nanoTime() - start, cores, this.virtual);
+	}
+
+	// One frame on the calling thread, with its own rasterizer and player, so nothing is shared but the map
+	protected Rasterizer render(Pose pose) {
+		final double fov = TrigTools.degreesToRadiansD * MathTools.clamp(pose.fov, 0, 180);
+		Rasterizer rasterizer = new Rasterizer(pose.width, pose.height, fov, this.range, this.lightRange);
+		try {
+			rasterizer.render(new Player(pose.x, pose.y, pose.direction, this.weapon), this.map, null);
+		} catch (RuntimeException e) {
+			rasterizer.dispose();
+			throw e;
+		}
+		return rasterizer;
+	}
+
+	@Override
+	public void dispose() {
+		this.renderers.shutdown();
+		this.encoders.shutdown();
+		this.weapon.dispose();
+	}
+}
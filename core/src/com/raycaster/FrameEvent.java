@@ -0,0 +1,70 @@
+package com.raycaster;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("com.raycaster.Frame")
+@Label("Frame")
+@Category("Raycaster")
+@Description("Time spent in each phase of a frame, and the work it did")
+class FrameEvent extends Event {
+	@Label("Update") @Timespan
+	long update;
+
+	@Label("Clouds") @Timespan
+	long clouds;
+
+	@Label("Sky") @Timespan
+	long sky;
+
+	@Label("Floor") @Timespan
+	long floor;
+
+	@Label("Columns") @Timespan
+	long columns;
+
+	@Label("Sprites") @Timespan
+	long sprites;
+
+	@Label("Weapon") @Timespan
+	long weapon;
+
+	@Label("Raster") @Timespan
+	long raster;
+
+	@Label("Rays Cast")
+	long rays;
+
+	@Label("Cells Traversed")
+	long cells;
+
+	@Label("Draw Calls")
+	long drawCalls;
+
+	@Label("Uploaded") @DataAmount
+	long uploaded;
+
+	static void emit(Profiler profiler) {
+		FrameEvent event = new FrameEvent();
+		if (!event.shouldCommit())
+			return;
+		event.update = profiler.get(Profiler.Phase.UPDATE);
+		event.clouds = profiler.get(Profiler.Phase.CLOUDS);
+		event.sky = profiler.get(Profiler.Phase.SKY);
+		event.floor = profiler.get(Profiler.Phase.FLOOR);
+		event.columns = profiler.get(Profiler.Phase.COLUMNS);
+		event.sprites = profiler.get(Profiler.Phase.SPRITES);
+		event.weapon = profiler.get(Profiler.Phase.WEAPON);
+		event.raster = profiler.get(Profiler.Phase.RASTER);
+		event.rays = profiler.get(Profiler.Counter.RAYS);
+		event.cells = profiler.get(Profiler.Counter.CELLS);
+		event.drawCalls = profiler.get(Profiler.Counter.DRAW_CALLS);
+		event.uploaded = profiler.get(Profiler.Counter.UPLOADED_BYTES);
+		event.commit();
+	}
+}
@@ -0,0 +1,55 @@
+package com.raycaster;
+
+import java.util.Arrays;
+import com.badlogic.gdx.utils.Disposable;
+
+public abstract class Grid implements Disposable {
+	protected static final byte BORDER = 1;
+
+	protected final int width;
+	protected final int height;
+
+	protected Grid(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+
+	public boolean contains(int x, int y) {
+		return x >= 0 && y >= 0 && x < this.width && y < this.height;
+	}
+
+	public abstract int get(int x, int y);
+
+	public abstract void set(int x, int y, byte value);
+
+	public void getRow(int x, int y, int length, byte[] row, int offset) {
+		if (y < 0 || y >= this.height) {
+			Arrays.fill(row, offset, offset + length, BORDER);
+			return;
+		}
+		for (int i = 0; i < length; i++)
+			row[offset + i] = (byte) this.get(x + i, y);
+	}
+
+	public void setRow(int x, int y, int length, byte[] row, int offset) {
+		for (int i = 0; i < length; i++)
+			this.set(x + i, y, row[offset + i]);
+	}
+
+	// Fills in how many cells there are of every value, for grids that keep count as they are written,
+	// so a map built on them needn't read every cell. Returns false when the grid doesn't know
+	public boolean count(long[] counts) {
+		return false;
+	}
+
+	public void fill(byte value) {
+		byte[] row = new byte[this.width];
+		Arrays.fill(row, value);
+		for (int y = 0; y < this.height; y++)
+			this.setRow(0, y, this.width, row, 0);
+	}
+
+	@Override
+	public void dispose() {
+	}
+}
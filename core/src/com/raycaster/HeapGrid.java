@@ -0,0 +1,67 @@
+package com.raycaster;
+
+import java.util.Arrays;
+import com.github.tommyettinger.digital.MathTools;
+
+public class HeapGrid extends Grid {
+	protected final int stride;
+	protected final byte[] cells;
+
+	public HeapGrid(int width, int height) {
+		super(width, height);
+
+		// Row-major cells surrounded by a solid border, so anything walking off the map stops on a wall
+		this.stride = this.width + 2;
+		this.cells = new byte[this.stride * (this.height + 2)];
+		Arrays.fill(this.cells, 0, this.stride, BORDER);
+		Arrays.fill(this.cells, this.cells.length - this.stride, this.cells.length, BORDER);
+		for (int y = 0; y < this.height; y++) {
+			this.cells[this.index(-1, y)] = BORDER;
+			this.cells[this.index(this.width, y)] = BORDER;
+		}
+	}
+
+	protected int index(int x, int y) {
+		return (y + 1) * this.stride + x + 1;
+	}
+
+	@Override
+	public int get(int x, int y) {
+		if (x < -1 || y < -1 || x > this.width || y > this.height)
+			return BORDER;
+		return this.cells[this.index(x, y)];
+	}
+
+	@Override
+	public void set(int x, int y, byte value) {
+		if (this.contains(x, y))
+			this.cells[this.index(x, y)] = value;
+	}
+
+	@Override
+	public void getRow(int x, int y, int length, byte[] row, int offset) {
+		if (y < -1 || y > this.height) {
+			Arrays.fill(row, offset, offset + length, BORDER);
+			return;
+		}
+		final int start = MathTools.clamp(x, -1, this.width + 1);
+		final int end = MathTools.clamp(x + length, -1, this.width + 1);
+		if (start >= end) {
+			Arrays.fill(row, offset, offset + length, BORDER);
+			return;
+		}
+		Arrays.fill(row, offset, offset + start - x, BORDER);
+		System.arraycopy(this.cells, this.index(start, y), row, offset + start - x, end - start);
+		Arrays.fill(row, offset + end - x, offset + length, BORDER);
+	}
+
+	@Override
+	public void setRow(int x, int y, int length, byte[] row, int offset) {
+		if (y < 0 || y >= this.height)
+			return;
+		final int start = MathTools.clamp(x, 0, this.width);
+		final int end = MathTools.clamp(x + length, 0, this.width);
+		if (start < end)
+			System.arraycopy(row, offset + start - x, this.cells, this.index(start, y), end - start);
+	}
+}
@@ -0,0 +1,55 @@
+package com.raycaster;
+
+// Each column keeps up to `layers` visible walls, nearest first, at column * layers + layer
+public class Hits {
+	protected final int size;
+	protected final int layers;
+	protected final double[] angle;
+	protected final double[] cos;
+	protected final int[] count;
+	protected final int[] cells;
+	protected final double[] distance;
+	protected final double[] offset;
+	protected final double[] clip;
+	protected final byte[] shading;
+	protected final byte[] light;
+	protected final int[] height;
+	protected final int[] cellX;
+	protected final int[] cellY;
+
+	public Hits(int size) {
+		this(size, 1);
+	}
+
+	public Hits(int size, int layers) {
+		this.size = size;
+		this.layers = layers;
+		this.angle = new double[size];
+		this.cos = new double[size];
+		this.count = new int[size];
+		this.cells = new int[size];
+		this.distance = new double[size * layers];
+		this.offset = new double[size * layers];
+		this.clip = new double[size * layers];
+		this.shading = new byte[size * layers];
+		this.light = new byte[size * layers];
+		this.height = new int[size * layers];
+		this.cellX = new int[size * layers];
+		this.cellY = new int[size * layers];
+	}
+
+	public boolean isHit(int column) {
+		return this.count[column] > 0;
+	}
+
+	public int index(int column, int layer) {
+		return column * this.layers + layer;
+	}
+
+	public long traversed(int from, int to) {
+		long total = 0;
+		for (int column = from; column < to; column++)
+			total += this.cells[column];
+		return total;
+	}
+}
@@ -0,0 +1,188 @@
+package com.raycaster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Every change to the map in order, numbered by a version that only ever grows, plus the rectangles
+// changed since listeners were last told
+public class Journal {
+	public interface Listener {
+		// Called once per flush with the versions in (from, to] and the dirty regions still readable
+		void changed(Journal journal, long from, long to);
+	}
+
+	public interface Visitor {
+		void visit(long version, int x, int y, int before, int after);
+	}
+
+	protected static final int HISTORY = 1 << 20;
+	protected static final int REGIONS = 16;
+
+	protected final int width;
+	protected final int height;
+	protected long version;
+	protected long first;
+	protected int size;
+	protected int[] x;
+	protected int[] y;
+	protected byte[] before;
+	protected byte[] after;
+
+	// Inclusive left, top, right, bottom of each dirty region
+	protected final int[] regions;
+	protected int regionCount;
+
+	private long flushed;
+	private final ArrayList<Listener> listeners;
+
+	public Journal(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.first = 1;
+		this.x = new int[256];
+		this.y = new int[256];
+		this.before = new byte[256];
+		this.after = new byte[256];
+		this.regions = new int[REGIONS * 4];
+		this.listeners = new ArrayList<Listener>();
+	}
+
+	public void addListener(Listener listener) {
+		this.listeners.add(listener);
+	}
+
+	public void removeListener(Listener listener) {
+		this.listeners.remove(listener);
+	}
+
+	public long getVersion() {
+		return this.version;
+	}
+
+	public void record(int x, int y, int before, int after) {
+		if (this.size == HISTORY) {
+			// Only the newer half is kept, anyone further behind has to rescan
+			final int dropped = HISTORY / 2;
+			System.arraycopy(this.x, dropped, this.x, 0, this.size - dropped);
+			System.arraycopy(this.y, dropped, this.y, 0, this.size - dropped);
+			System.arraycopy(this.before, dropped, this.before, 0, this.size - dropped);
+			System.arraycopy(this.after, dropped, this.after, 0, this.size - dropped);
+			this.size -= dropped;
+			this.first += dropped;
+		} else if (this.size == this.x.length) {
+			final int capacity = this.size * 2;
+			this.x = Arrays.copyOf(this.x, capacity);
+			this.y = Arrays.copyOf(this.y, capacity);
+			this.before = Arrays.copyOf(this.before, capacity);
+			this.after = Arrays.copyOf(this.after, capacity);
+		}
+		this.x[this.size] = x;
+		this.y[this.size] = y;
+		this.before[this.size] = (byte) before;
+		this.after[this.size] = (byte) after;
+		this.size++;
+		this.version++;
+		this.dirty(x, y, x, y);
+	}
+
+	// The whole map changed at once: the history so far no longer describes how to get here
+	public void reset() {
+		this.version++;
+		this.size = 0;
+		this.first = this.version + 1;
+		this.regionCount = 0;
+		this.dirty(0, 0, this.width - 1, this.height - 1);
+	}
+
+	// Visits the changes after the given version, oldest first. Returns false when some of them are
+	// no longer kept, in which case the caller has to rebuild from the map itself
+	public boolean changesSince(long version, Visitor visitor) {
+		if (version < this.first - 1)
+			return false;
+		for (int i = (int) Math.max(version - this.first + 1, 0); i < this.size; i++)
+			visitor.visit(this.first + i, this.x[i], this.y[i], this.before[i], this.after[i]);
+		return true;
+	}
+
+	// Tells the listeners about everything since the last flush, once per frame
+	public void flush() {
+		if (this.version == this.flushed)
+			return;
+		for (int i = 0; i < this.listeners.size(); i++)
+			this.listeners.get(i).changed(this, this.flushed, this.version);
+		this.flushed = this.version;
+		this.regionCount = 0;
+	}
+
+	public int getRegionCount() {
+		return this.regionCount;
+	}
+
+	public int getLeft(int region) {
+		return this.regions[region * 4];
+	}
+
+	public int getTop(int region) {
+		return this.regions[region * 4 + 1];
+	}
+
+	public int getRight(int region) {
+		return this.regions[region * 4 + 2];
+	}
+
+	public int getBottom(int region) {
+		return this.regions[region * 4 + 3];
+	}
+
+	// Grows a region the cell touches, or starts a new one. Past the limit, the pair whose union
+	// adds the least area is merged
+	private void dirty(int left, int top, int right, int bottom) {
+		final int[] regions = this.regions;
+		for (int i = 0; i < this.regionCount; i++) {
+			final int r = i * 4;
+			if (left <= regions[r + 2] + 1 && right >= regions[r] - 1 && top <= regions[r + 3] + 1 && bottom >= regions[r + 1] - 1) {
+				regions[r] = Math.min(regions[r], left);
+				regions[r + 1] = Math.min(regions[r + 1], top);
+				regions[r + 2] = Math.max(regions[r + 2], right);
+				regions[r + 3] = Math.max(regions[r + 3], bottom);
+				return;
+			}
+		}
+		if (this.regionCount == REGIONS)
+			this.merge();
+		final int r = this.regionCount++ * 4;
+		regions[r] = left;
+		regions[r + 1] = top;
+		regions[r + 2] = right;
+		regions[r + 3] = bottom;
+	}
+
+	private void merge() {
+		final int[] regions = this.regions;
+		long best = Long.MAX_VALUE;
+		int a = 0, b = 1;
+		for (int i = 0; i < this.regionCount; i++) {
+			for (int j = i + 1; j < this.regionCount; j++) {
+				final long growth = area(Math.min(regions[i * 4], regions[j * 4]), Math.min(regions[i * 4 + 1], regions[j * 4 + 1]),
+					Math.max(regions[i * 4 + 2], regions[j * 4 + 2]), Math.max(regions[i * 4 + 3], regions[j * 4 + 3]))
+					- area(regions[i * 4], regions[i * 4 + 1], regions[i * 4 + 2], regions[i * 4 + 3])
+					- area(regions[j * 4], regions[j * 4 + 1], regions[j * 4 + 2], regions[j * 4 + 3]);
+				if (growth < best) {
+					best = growth;
+					a = i;
+					b = j;
+				}
+			}
+		}
+		regions[a * 4] = Math.min(regions[a * 4], regions[b * 4]);
+		regions[a * 4 + 1] = Math.min(regions[a * 4 + 1], regions[b * 4 + 1]);
+		regions[a * 4 + 2] = Math.max(regions[a * 4 + 2], regions[b * 4 + 2]);
+		regions[a * 4 + 3] = Math.max(regions[a * 4 + 3], regions[b * 4 + 3]);
+		final int last = --this.regionCount * 4;
+		System.arraycopy(regions, last, regions, b * 4, 4);
+	}
+
+	private static long area(int left, int top, int right, int bottom) {
+		return (long) (right - left + 1) * (bottom - top + 1);
+	}
+}
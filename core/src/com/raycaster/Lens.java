@@ -0,0 +1,41 @@
+package com.raycaster;
+
+import com.github.tommyettinger.digital.TrigTools;
+
+// Everything a frame needs that depends only on the resolution and field of view
+public class Lens {
+	protected final int columns;
+	protected final int rows;
+	protected final double fov;
+	protected final double focalLength;
+	protected final double[] angle;
+	protected final double[] cos;
+	protected final double[] row;
+
+	public Lens(int columns, int rows, double fov) {
+		this(columns, rows, fov, 1);
+	}
+
+	// Rows of a flat are stretched by the aspect ratio when the target isn't square
+	public Lens(int columns, int rows, double fov, double aspect) {
+		this.columns = columns;
+		this.rows = rows;
+		this.fov = fov;
+		this.focalLength = TrigTools.PI_D / fov - 1;
+		this.angle = new double[columns];
+		this.cos = new double[columns];
+		this.row = new double[rows / 2];
+
+		for (int column = 0; column < columns; column++) {
+			this.angle[column] = TrigTools.atan2(2d * column / columns - 1, this.focalLength);
+			this.cos[column] = TrigTools.cos(this.angle[column]);
+		}
+		for (int y = 0; y < this.row.length; y++)
+			this.row[y] = 1 / (1 + y * aspect);
+	}
+
+	public void aim(Hits hits) {
+		System.arraycopy(this.angle, 0, hits.angle, 0, this.columns);
+		System.arraycopy(this.cos, 0, hits.cos, 0, this.columns);
+	}
+}
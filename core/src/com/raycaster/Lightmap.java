@@ -0,0 +1,202 @@
+package com.raycaster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import com.badlogic.gdx.utils.LongMap;
+import com.github.tommyettinger.digital.MathTools;
+
+// Light from point sources baked per open cell. Each light keeps its own patch of contributions,
+// so a change to the map only relights the lights that reach it. Levels are only kept in the 64x64
+// tiles some light reaches, summed from the patches over the footprint of whichever light changed
+public class Lightmap {
+	protected static final int TILE = 6;
+	protected static final int MASK = (1 << TILE) - 1;
+
+	protected class Light {
+		protected final double x;
+		protected final double y;
+		protected final double radius;
+		protected final int intensity;
+		protected final int left;
+		protected final int top;
+		protected final int size;
+		protected final byte[] patch;
+
+		public Light(double x, double y, double radius, int intensity) {
+			this.x = x;
+			this.y = y;
+			this.radius = radius;
+			this.intensity = MathTools.clamp(intensity, 0, 0xFF);
+			this.left = MathTools.floor(x - radius);
+			this.top = MathTools.floor(y - radius);
+			this.size = MathTools.ceil(radius * 2) + 1;
+			this.patch = new byte[this.size * this.size];
+		}
+
+		public boolean reaches(int x, int y, int width, int height) {
+			return x + width > this.left && x < this.left + this.size && y + height > this.top && y < this.top + this.size;
+		}
+
+		// Open cells in sight of the light get a contribution falling off with the square of the distance
+		protected void compute() {
+			for (int py = 0; py < this.size; py++) {
+				for (int px = 0; px < this.size; px++) {
+					final int cx = this.left + px, cy = this.top + py;
+					final double distance = Math.hypot(cx + 0.5 - this.x, cy + 0.5 - this.y);
+					int value = 0;
+					if (distance < this.radius && grid.contains(cx, cy) && grid.get(cx, cy) == 0 && visible(this.x, this.y, cx, cy)) {
+						final double falloff = 1 - distance / this.radius;
+						value = (int) (this.intensity * falloff * falloff + 0.5);
+					}
+					this.patch[py * this.size + px] = (byte) value;
+				}
+			}
+		}
+
+		protected void refresh() {
+			Lightmap.this.refresh(this.left, this.top, this.size, this.size);
+		}
+	}
+
+	protected final int width;
+	protected final int height;
+	protected final Grid grid;
+	protected final LongMap<byte[]> levels;
+	protected final ArrayList<Light> lights;
+
+	private int[] sums;
+
+	public Lightmap(Grid grid) {
+		this.grid = grid;
+		this.width = grid.width;
+		this.height = grid.height;
+		this.levels = new LongMap<byte[]>();
+		this.lights = new ArrayList<Light>();
+		this.sums = new int[0];
+	}
+
+	public int add(double x, double y, double radius, int intensity) {
+		Light light = new Light(x, y, radius, intensity);
+		light.compute();
+		this.lights.add(light);
+		light.refresh();
+		return this.lights.size() - 1;
+	}
+
+	private static long key(int x, int y) {
+		return (long) (y >> TILE) << 32 | (x >> TILE);
+	}
+
+	public int get(int x, int y) {
+		if (x < 0 || y < 0 || x >= this.width || y >= this.height)
+			return 0;
+		final byte[] tile = this.levels.get(key(x, y));
+		return tile == null ? 0 : Byte.toUnsignedInt(tile[(y & MASK) << TILE | x & MASK]);
+	}
+
+	// Recomputes every light in parallel, after the map was rebuilt as a whole
+	public void bake() {
+		this.levels.clear();
+		IntStream.range(0, this.lights.size()).parallel().forEach(i -> this.lights.get(i).compute());
+		for (Light light : this.lights)
+			light.refresh();
+	}
+
+	// Sums the patches of every light over a rectangle, and stores the total clamped to a byte
+	private void refresh(int x, int y, int width, int height) {
+		final int left = Math.max(x, 0), top = Math.max(y, 0);
+		final int right = Math.min(x + width, this.width), bottom = Math.min(y + height, this.height);
+		if (left >= right || top >= bottom)
+			return;
+		final int stride = right - left;
+		if (this.sums.length < stride * (bottom - top))
+			this.sums = new int[stride * (bottom - top)];
+		final int[] sums = this.sums;
+		Arrays.fill(sums, 0, stride * (bottom - top), 0);
+		for (Light light : this.lights) {
+			if (!light.reaches(left, top, right - left, bottom - top))
+				continue;
+			for (int cy = Math.max(top, light.top); cy < Math.min(bottom, light.top + light.size); cy++)
+				for (int cx = Math.max(left, light.left); cx < Math.min(right, light.left + light.size); cx++)
+					sums[(cy - top) * stride + cx - left] += Byte.toUnsignedInt(light.patch[(cy - light.top) * light.size + cx - light.left]);
+		}
+		for (int cy = top; cy < bottom; cy++) {
+			for (int cx = left; cx < right; cx++) {
+				final int level = Math.min(sums[(cy - top) * stride + cx - left], 0xFF);
+				byte[] tile = this.levels.get(key(cx, cy));
+				if (tile == null) {
+					if (level == 0)
+						continue;
+					tile = new byte[1 << TILE * 2];
+					this.levels.put(key(cx, cy), tile);
+				}
+				tile[(cy & MASK) << TILE | cx & MASK] = (byte) level;
+			}
+		}
+		// Tiles left dark, as when walls close in around a light or a streamed chunk is dropped, are let go
+		for (int ty = top >> TILE; ty <= bottom - 1 >> TILE; ty++) {
+			for (int tx = left >> TILE; tx <= right - 1 >> TILE; tx++) {
+				final long key = (long) ty << 32 | tx;
+				final byte[] tile = this.levels.get(key);
+				if (tile != null && dark(tile))
+					this.levels.remove(key);
+			}
+		}
+	}
+
+	private static boolean dark(byte[] tile) {
+		for (byte level : tile)
+			if (level != 0)
+				return false;
+		return true;
+	}
+
+	// A cell was opened or closed: only the lights whose patch covers it are recomputed
+	public void update(int x, int y) {
+		this.update(x, y, 1, 1);
+	}
+
+	public void update(int x, int y, int width, int height) {
+		boolean changed = false;
+		for (Light light : this.lights) {
+			if (light.reaches(x, y, width, height)) {
+				light.compute();
+				changed = true;
+			}
+		}
+		// Patches overlap, so levels are only summed once every light that changed is recomputed
+		if (changed)
+			for (Light light : this.lights)
+				if (light.reaches(x, y, width, height))
+					light.refresh();
+	}
+
+	// Walks the cells between the light and the centre of a cell, which is lit unless a wall is in between
+	protected boolean visible(double x, double y, int targetX, int targetY) {
+		final double dx = targetX + 0.5 - x, dy = targetY + 0.5 - y;
+		final int stepX = dx < 0 ? -1 : 1, stepY = dy < 0 ? -1 : 1;
+		final double deltaX = dx == 0 ? Double.POSITIVE_INFINITY : Math.abs(1 / dx);
+		final double deltaY = dy == 0 ? Double.POSITIVE_INFINITY : Math.abs(1 / dy);
+
+		int cellX = MathTools.floor(x), cellY = MathTools.floor(y);
+		double sideX = dx == 0 ? Double.POSITIVE_INFINITY : ((stepX > 0 ? cellX + 1 : cellX) - x) / dx;
+		double sideY = dy == 0 ? Double.POSITIVE_INFINITY : ((stepY > 0 ? cellY + 1 : cellY) - y) / dy;
+		while (cellX != targetX || cellY != targetY) {
+			if (this.grid.get(cellX, cellY) > 0)
+				return false;
+			if (sideX < sideY) {
+				if (sideX > 1)
+					break;
+				cellX += stepX;
+				sideX += deltaX;
+			} else {
+				if (sideY > 1)
+					break;
+				cellY += stepY;
+				sideY += deltaY;
+			}
+		}
+		return true;
+	}
+}
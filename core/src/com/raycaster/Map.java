@@ -1,23 +1,37 @@
 package com.raycaster;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.utils.Disposable;
 import com.github.tommyettinger.digital.MathTools;
-import com.github.tommyettinger.digital.ArrayTools;
 import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.Texture;
 import squidpony.squidgrid.mapping.ConnectingMapGenerator;
 import squidpony.squidmath.RNG;
 import squidpony.squidgrid.MimicFill;
 
 public class Map implements Disposable {
-	protected class SkyBox implements Disposable{
-		protected Texture background;
-		protected Texture foreground;
+	protected static class SkyBox implements Disposable{
+		protected Surface background;
+		protected Surface foreground;
+		protected Clouds clouds;
+
+		private final Noise noise;
+		private final int depth;
+		private final float gain;
+		private final float clip;
+		private final Color color;
 		
 		protected SkyBox(int backgroundWidth, int backgroundHeight, int cloudMapWidth, int cloudMapHeight, int cloudMapDepth, float gain, float clip, Color color) {
-			this.background = new Texture(Noise.perlinNoise(backgroundWidth, backgroundHeight, 1, gain, 1f, color));
-			this.foreground = new Texture(Noise.fractalNoise(cloudMapWidth, cloudMapHeight, cloudMapDepth, gain, clip, color));
+			NoiseCache cache = new NoiseCache();
+			this.background = new Surface(cache.perlinNoise(backgroundWidth, backgroundHeight, 1, gain, 1f, color));
+			this.foreground = new Surface(cache.fractalNoise(cloudMapWidth, cloudMapHeight, cloudMapDepth, gain, clip, color));
+			this.noise = cache.noise;
+			this.depth = cloudMapDepth;
+			this.gain = gain;
+			this.clip = clip;
+			this.color = color;
 		}
 		
 		protected SkyBox(int backgroundWidth, int backgroundHeight, int foregroundWidth, int foregroundHeight, int foregroundDepth, float gain, float clip, int color) {
@@ -40,47 +54,192 @@ public class Map implements Disposable {
 			this(backgroundSize, backgroundSize, foregroundSize, foregroundSize, foregroundDepth, gain, clip);
 		}
 		
+		// Sets the clouds drifting, at the size of the still foreground they are drawn in place of. The first
+		// keyframes are generated here, so this is best called off the render thread
+		protected void animate(long budget) {
+			if (this.clouds == null)
+				this.clouds = new Clouds(this.foreground.width, this.foreground.height, this.depth, this.gain, this.clip, this.color, this.noise, budget);
+		}
+		
 		@Override
 		public void dispose() {
 			background.dispose();
 			foreground.dispose();
+			if (clouds != null)
+				clouds.dispose();
 		}
 	}
 	
+	// The tint of the sky, and the colour at the horizon of the flat sky drawn while there is no skybox
+	protected static final int SKY = 0x9097A4FF;
+	protected static final int ZENITH = 0x4C5466FF;
+
 	protected int width;
 	protected int height;
-	protected int[][] wallGrid;
+	protected Grid wallGrid;
 	protected byte light;
 	protected SkyBox skybox;
-	protected Texture wallTexture;
-	protected Texture floorTexture;
+	protected Surface floorTexture;
+	protected final byte[] materials;
+	protected final long[] heights;
+	protected final Entities entities;
+	protected final Pyramid pyramid;
+	protected final Lightmap lightmap;
+	protected final Journal journal;
+	protected int maxHeight;
+	private int surveyX;
+	private int surveyY;
+
+	private final ArrayList<Surface> wallTextures;
+	private Atlas wallAtlas;
 
 	public Map(int size) {
 		this(size, size);
 	}
 	
 	public Map(int width, int height) {
-		this.width = width;
-		this.height = height;
-		this.wallGrid = new int[this.width][this.height];
+		this(new HeapGrid(width, height));
+	}
+	
+	public Map(Grid wallGrid) {
+		this(wallGrid, new Surface(Gdx.files.internal("wall.png")), new Surface(Gdx.files.internal("floor.png")));
+		this.skybox = createSkyBox();
+	}
+
+	// Starts without a sky, which can take a while to generate, until setSkyBox. Nothing here touches GL,
+	// so the map can be built off the render thread
+	public Map(Grid wallGrid, Surface wallTexture, Surface floorTexture) {
+		this.width = wallGrid.width;
+		this.height = wallGrid.height;
+		this.wallGrid = wallGrid;
 		this.light = 0x20;
-		this.skybox = new SkyBox(1080,512,4,0.2f,0.9f,0x9097A4FF);
-		this.wallTexture = new Texture(Gdx.files.internal("wall.png"));
-		this.floorTexture = new Texture(Gdx.files.internal("floor.png"));
+		this.materials = new byte[Byte.MAX_VALUE + 1];
+		this.heights = new long[Byte.MAX_VALUE + 1];
+		this.pyramid = new Pyramid(this.width, this.height);
+		this.lightmap = new Lightmap(wallGrid);
+		this.entities = new Entities(this.width, this.height);
+		this.journal = new Journal(this.width, this.height);
+		this.measure();
+		this.wallTextures = new ArrayList<Surface>();
+		this.addMaterial(wallTexture);
+		this.floorTexture = floorTexture;
+	}
+
+	protected static SkyBox createSkyBox() {
+		return new SkyBox(1080, 512, 4, 0.2f, 0.9f, SKY);
 	}
 
-	public Integer get(double x, double y) {
+	public void setSkyBox(SkyBox skybox) {
+		if (this.skybox != null)
+			this.skybox.dispose();
+		this.skybox = skybox;
+	}
+
+	public int get(double x, double y) {
 		return this.get(MathTools.floor(x), MathTools.floor(y));
 	}
 
-	public Integer get(int x, int y) {
-		int height;
-		try {
-			height = this.wallGrid[x][y];
-		} catch (ArrayIndexOutOfBoundsException e) {
-			height = -1;
+	public int get(int x, int y) {
+		return this.wallGrid.get(x, y);
+	}
+
+	public boolean contains(int x, int y) {
+		return this.wallGrid.contains(x, y);
+	}
+
+	public int getMaxHeight() {
+		return this.maxHeight;
+	}
+
+	// Counts cells of every height, so the tallest wall is known without rescanning after each set,
+	// and measures the pyramid. Grids that keep their own counts, like a mapped file or a streamed
+	// world, are never read as a whole: their pyramid is measured as the player gets near, in survey
+	protected void measure() {
+		this.pyramid.clear();
+		this.surveyX = this.surveyY = Integer.MIN_VALUE;
+		if (!this.wallGrid.count(this.heights)) {
+			Arrays.fill(this.heights, 0);
+			byte[] row = new byte[this.width];
+			for (int y = 0; y < this.height; y++) {
+				this.wallGrid.getRow(0, y, this.width, row, 0);
+				for (int x = 0; x < this.width; x++)
+					this.heights[row[x]]++;
+			}
+			for (int y = 0; y < this.height; y += 1 << Pyramid.TILE)
+				for (int x = 0; x < this.width; x += 1 << Pyramid.TILE)
+					this.pyramid.measure(this.wallGrid, x, y);
+		}
+		this.maxHeight = Byte.MAX_VALUE;
+		while (this.maxHeight > 0 && this.heights[this.maxHeight] == 0)
+			this.maxHeight--;
+	}
+
+	// Once per frame: measures the pyramid tiles around a position that aren't known yet, each time it
+	// moves into another tile. Rays through tiles that were never measured still hit everything, they
+	// only can't skip ahead
+	public void survey(double x, double y) {
+		final int tileX = MathTools.floor(x) >> Pyramid.TILE, tileY = MathTools.floor(y) >> Pyramid.TILE;
+		if (tileX == this.surveyX && tileY == this.surveyY)
+			return;
+		this.surveyX = tileX;
+		this.surveyY = tileY;
+		for (int j = tileY - 1; j <= tileY + 1; j++) {
+			for (int i = tileX - 1; i <= tileX + 1; i++) {
+				final int cellX = i << Pyramid.TILE, cellY = j << Pyramid.TILE;
+				if (this.wallGrid.contains(cellX, cellY) && !this.pyramid.isMeasured(cellX, cellY))
+					this.pyramid.measure(this.wallGrid, cellX, cellY);
+			}
+		}
+	}
+
+	public int addLight(double x, double y, double radius, int intensity) {
+		return this.lightmap.add(x, y, radius, intensity);
+	}
+
+	public int getLight(int x, int y) {
+		return this.lightmap.get(x, y);
+	}
+
+	public void getRow(int x, int y, int length, byte[] row, int offset) {
+		this.wallGrid.getRow(x, y, length, row, offset);
+	}
+
+	public void getRegion(int x, int y, int width, int height, byte[] region) {
+		for (int row = 0; row < height; row++)
+			this.wallGrid.getRow(x, y + row, width, region, row * width);
+	}
+
+	// Every wall value starts out with the first material
+	public int addMaterial(FileHandle file) {
+		return this.addMaterial(new Surface(file));
+	}
+
+	public int addMaterial(Surface texture) {
+		if (this.wallTextures.size() > Byte.MAX_VALUE)
+			throw new IllegalStateException("No more than " + (Byte.MAX_VALUE + 1) + " materials");
+		this.wallTextures.add(texture);
+		if (this.wallAtlas != null) {
+			this.wallAtlas.dispose();
+			this.wallAtlas = null;
 		}
-		return height;
+		return this.wallTextures.size() - 1;
+	}
+
+	public void setMaterial(int value, int material) {
+		if (material < 0 || material >= this.wallTextures.size())
+			throw new IndexOutOfBoundsException("No material " + material);
+		this.materials[MathTools.clamp(value, 0, Byte.MAX_VALUE)] = (byte) material;
+	}
+
+	public int getMaterial(int value) {
+		return this.materials[value];
+	}
+
+	// Packed on first use after a material is added, so all walls draw from one texture
+	public Atlas getWallAtlas() {
+		if (this.wallAtlas == null)
+			this.wallAtlas = new Atlas(this.wallTextures.toArray(new Surface[0]));
+		return this.wallAtlas;
 	}
 
 	public void set(double x, double y, int height) {
@@ -88,32 +247,113 @@ public class Map implements Disposable {
 	}
 	
 	public void set(int x, int y, int height) {
-		try {
-			this.wallGrid[x][y] = height;
-		} catch (ArrayIndexOutOfBoundsException e) {
+		if (!this.wallGrid.contains(x, y))
 			return;
+		final int value = MathTools.clamp(height, 0, Byte.MAX_VALUE);
+		final int previous = this.wallGrid.get(x, y);
+		if (previous == value)
+			return;
+		// Written first, so a grid that refuses the write leaves the counts as they were
+		this.wallGrid.set(x, y, (byte) value);
+		this.heights[previous]--;
+		this.heights[value]++;
+		if ((previous > 0) != (value > 0)) {
+			this.pyramid.update(this.wallGrid, x, y, value > 0);
+			this.lightmap.update(x, y);
 		}
+		if (value > this.maxHeight)
+			this.maxHeight = value;
+		while (this.maxHeight > 0 && this.heights[this.maxHeight] == 0)
+			this.maxHeight--;
+		this.journal.record(x, y, previous, value);
+	}
+
+	// Replaces a block of cells at once, as when a chunk of a streamed world arrives or leaves. The
+	// pyramid is cleared and lights recomputed only after the whole block is written
+	public void setRegion(int x, int y, int width, int height, byte[] region) {
+		byte[] row = new byte[width];
+		boolean flipped = false;
+		for (int r = 0; r < height; r++) {
+			if (y + r < 0 || y + r >= this.height)
+				continue;
+			this.wallGrid.getRow(x, y + r, width, row, 0);
+			for (int i = 0; i < width; i++) {
+				if (!this.wallGrid.contains(x + i, y + r))
+					continue;
+				final int previous = row[i], value = MathTools.clamp(region[r * width + i], 0, Byte.MAX_VALUE);
+				if (previous == value)
+					continue;
+				this.heights[previous]--;
+				this.heights[value]++;
+				if (value > this.maxHeight)
+					this.maxHeight = value;
+				if (value > 0)
+					this.pyramid.mark(x + i, y + r);
+				flipped |= (previous > 0) != (value > 0);
+				this.journal.record(x + i, y + r, previous, value);
+				row[i] = (byte) value;
+			}
+			this.wallGrid.setRow(x, y + r, width, row, 0);
+		}
+		while (this.maxHeight > 0 && this.heights[this.maxHeight] == 0)
+			this.maxHeight--;
+		if (!flipped)
+			return;
+		// Clearing looks at a whole block whichever of its cells it is given, so once per block is enough
+		final int left = Math.max(x, 0), top = Math.max(y, 0);
+		final int right = Math.min(x + width, this.width) - 1, bottom = Math.min(y + height, this.height) - 1;
+		for (int by = top >> Pyramid.SHIFT; by <= bottom >> Pyramid.SHIFT; by++)
+			for (int bx = left >> Pyramid.SHIFT; bx <= right >> Pyramid.SHIFT; bx++)
+				this.pyramid.update(this.wallGrid, Math.max(bx << Pyramid.SHIFT, left), Math.max(by << Pyramid.SHIFT, top), false);
+		this.lightmap.update(x, y, width, height);
+	}
+
+	public Journal getJournal() {
+		return this.journal;
+	}
+
+	// Delivers the changes made since the last call to the journal's listeners, once per frame
+	public void flush() {
+		this.journal.flush();
 	}
 	
 	public void randomize(float chance) {
+		this.randomize(chance, new RNG());
+	}
+
+	public void randomize(float chance, long seed) {
+		this.randomize(chance, new RNG(seed));
+	}
+
+	protected void randomize(float chance, RNG rng) {
 		if (chance < 1f) {
 			final int roomSize = MathTools.round(0.5f/chance);
-			boolean[][] temp = MimicFill.mapToSample(new ConnectingMapGenerator(width, height, roomSize,roomSize, new RNG(),1).generate(),'#');
-			for (int x = 0; x < this.width; x++) {
-				for (int y = 0; y < this.height; y++) {
-					this.wallGrid[x][y] = temp[x][y]? 1 : 0;
+			boolean[][] temp = MimicFill.mapToSample(new ConnectingMapGenerator(width, height, roomSize,roomSize, rng,1).generate(),'#');
+			byte[] row = new byte[this.width];
+			for (int y = 0; y < this.height; y++) {
+				for (int x = 0; x < this.width; x++) {
+					row[x] = (byte) (temp[x][y]? 1 : 0);
 				}
+				this.wallGrid.setRow(0, y, this.width, row, 0);
 			}
 		}
 		else {
-			ArrayTools.fill(wallGrid, 1);
+			this.wallGrid.fill((byte) 1);
 		}
+		this.measure();
+		this.lightmap.bake();
+		this.journal.reset();
 	}
 
 	@Override
 	public void dispose() {
-		this.skybox.dispose();
-		this.wallTexture.dispose();
+		if (this.skybox != null)
+			this.skybox.dispose();
+		for (Surface texture : this.wallTextures)
+			texture.dispose();
+		if (this.wallAtlas != null)
+			this.wallAtlas.dispose();
 		this.floorTexture.dispose();
+		this.wallGrid.dispose();
 	}
 }
@@ -0,0 +1,256 @@
+package com.raycaster;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+public class MappedGrid extends Grid {
+	protected static final int MAGIC = 0x52434D50;
+	protected static final int VERSION = 2;
+	// The header is followed by a count of the cells holding each of the 256 values, kept up to date
+	// as cells are written, so a map opened on the file knows its heights without reading every cell
+	protected static final int COUNTS = 32;
+	protected static final int HEADER = COUNTS + 256 * 8;
+	protected static final int DEFAULT_SHIFT = 6;
+	protected static final long SEGMENT = 1L << 30;
+
+	protected final int shift;
+	protected final int mask;
+	protected final int chunkBytes;
+	protected final int chunksX;
+	protected final int chunksY;
+	protected final int chunksPerSegment;
+
+	private final String path;
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final FileChannel.MapMode mode;
+	private final AtomicReferenceArray<MappedByteBuffer> segments;
+	private final MappedByteBuffer header;
+	private final byte[] previous;
+
+	private MappedGrid(String path, RandomAccessFile file, int width, int height, int shift, boolean writable) throws IOException {
+		super(width, height);
+		this.shift = shift;
+		this.mask = (1 << shift) - 1;
+		this.chunkBytes = 1 << (shift * 2);
+		this.chunksX = (width + this.mask) >> shift;
+		this.chunksY = (height + this.mask) >> shift;
+		this.chunksPerSegment = (int) (SEGMENT / this.chunkBytes);
+		this.path = path;
+		this.file = file;
+		this.channel = file.getChannel();
+		this.mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+
+		final long chunks = (long) this.chunksX * this.chunksY;
+		this.segments = new AtomicReferenceArray<MappedByteBuffer>((int) ((chunks + this.chunksPerSegment - 1) / this.chunksPerSegment));
+		this.header = this.channel.map(this.mode, 0, HEADER);
+		this.previous = new byte[this.mask + 1];
+	}
+
+	public static MappedGrid create(FileHandle file, int width, int height) {
+		return create(file, width, height, DEFAULT_SHIFT);
+	}
+
+	public static MappedGrid create(FileHandle file, int width, int height, int shift) {
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file.file(), "rw");
+			// Chunks are never written out explicitly: truncating whatever was there, then extending the
+			// file, leaves them sparse and empty
+			raf.setLength(0);
+			MappedGrid grid = new MappedGrid(file.path(), raf, width, height, shift, true);
+			raf.setLength(length(width, height, shift));
+			grid.header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, width).putInt(12, height).putInt(16, shift);
+			grid.header.putLong(COUNTS, (long) width * height);
+			return grid;
+		} catch (IOException e) {
+			throw new GdxRuntimeException("Couldn't create map file " + file.path(), e);
+		}
+	}
+
+	public static MappedGrid open(FileHandle file) {
+		return open(file, true);
+	}
+
+	public static MappedGrid open(FileHandle file, boolean writable) {
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file.file(), writable ? "rw" : "r");
+			ByteBuffer header = ByteBuffer.allocate(HEADER);
+			raf.getChannel().read(header, 0);
+			header.position(0);
+			if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+				raf.close();
+				throw new GdxRuntimeException("Not a version " + VERSION + " map file: " + file.path());
+			}
+			final int width = header.getInt(), height = header.getInt(), shift = header.getInt();
+			if (width <= 0 || height <= 0 || shift <= 0 || shift > 15) {
+				raf.close();
+				throw new GdxRuntimeException("Bad dimensions in map file: " + file.path());
+			}
+			// A file cut short would fault on the first cell past its end, so it is refused up front
+			final long length = raf.length(), expected = length(width, height, shift);
+			if (length != expected) {
+				raf.close();
+				throw new GdxRuntimeException("Map file is " + length + " bytes, expected " + expected + ": " + file.path());
+			}
+			return new MappedGrid(file.path(), raf, width, height, shift, writable);
+		} catch (IOException e) {
+			throw new GdxRuntimeException("Couldn't open map file " + file.path(), e);
+		}
+	}
+
+	public static MappedGrid save(Grid source, FileHandle file) {
+		MappedGrid grid = create(file, source.width, source.height);
+		byte[] row = new byte[source.width];
+		for (int y = 0; y < source.height; y++) {
+			source.getRow(0, y, source.width, row, 0);
+			grid.setRow(0, y, source.width, row, 0);
+		}
+		grid.flush();
+		return grid;
+	}
+
+	private static long length(int width, int height, int shift) {
+		final long chunksX = ((long) width + (1 << shift) - 1) >> shift, chunksY = ((long) height + (1 << shift) - 1) >> shift;
+		return HEADER + chunksX * chunksY * (1L << shift * 2);
+	}
+
+	private MappedByteBuffer segment(int index) {
+		MappedByteBuffer segment = this.segments.get(index);
+		if (segment == null) {
+			// Mapping only reserves address space; pages are faulted in as cells are touched
+			try {
+				final long offset = HEADER + (long) index * this.chunksPerSegment * this.chunkBytes;
+				final long size = Math.min(SEGMENT, this.channel.size() - offset);
+				segment = this.channel.map(this.mode, offset, size);
+			} catch (IOException e) {
+				throw new GdxRuntimeException("Couldn't map map file segment " + index, e);
+			}
+			if (!this.segments.compareAndSet(index, null, segment))
+				segment = this.segments.get(index);
+		}
+		return segment;
+	}
+
+	private long offset(int x, int y) {
+		final long chunk = (long) (y >> this.shift) * this.chunksX + (x >> this.shift);
+		return chunk * this.chunkBytes + ((y & this.mask) << this.shift) + (x & this.mask);
+	}
+
+	@Override
+	public int get(int x, int y) {
+		if (!this.contains(x, y))
+			return BORDER;
+		final long offset = this.offset(x, y);
+		return this.segment((int) (offset / SEGMENT)).get((int) (offset % SEGMENT));
+	}
+
+	// A grid opened without write access fails here, rather than deep in the mapped buffer
+	private void writable() {
+		if (this.mode != FileChannel.MapMode.READ_WRITE)
+			throw new IllegalStateException("Map file opened read only: " + this.path);
+	}
+
+	@Override
+	public void set(int x, int y, byte value) {
+		this.writable();
+		if (!this.contains(x, y))
+			return;
+		final long offset = this.offset(x, y);
+		final MappedByteBuffer segment = this.segment((int) (offset / SEGMENT));
+		final byte previous = segment.get((int) (offset % SEGMENT));
+		if (previous == value)
+			return;
+		segment.put((int) (offset % SEGMENT), value);
+		this.count(previous, -1);
+		this.count(value, 1);
+	}
+
+	private void count(byte value, long change) {
+		final int index = COUNTS + Byte.toUnsignedInt(value) * 8;
+		this.header.putLong(index, this.header.getLong(index) + change);
+	}
+
+	@Override
+	public boolean count(long[] counts) {
+		for (int i = 0; i < counts.length; i++)
+			counts[i] = this.header.getLong(COUNTS + i * 8);
+		return true;
+	}
+
+	@Override
+	public void getRow(int x, int y, int length, byte[] row, int offset) {
+		if (y < 0 || y >= this.height) {
+			super.getRow(x, y, length, row, offset);
+			return;
+		}
+		// Cells within a chunk row are contiguous, so copy a chunk's worth at a time
+		int i = 0;
+		while (i < length) {
+			final int cx = x + i;
+			if (cx < 0 || cx >= this.width) {
+				row[offset + i++] = BORDER;
+				continue;
+			}
+			final int span = Math.min(Math.min(this.mask + 1 - (cx & this.mask), this.width - cx), length - i);
+			final long position = this.offset(cx, y);
+			ByteBuffer segment = this.segment((int) (position / SEGMENT)).duplicate();
+			segment.position((int) (position % SEGMENT));
+			segment.get(row, offset + i, span);
+			i += span;
+		}
+	}
+
+	@Override
+	public void setRow(int x, int y, int length, byte[] row, int offset) {
+		this.writable();
+		if (y < 0 || y >= this.height)
+			return;
+		int i = Math.max(-x, 0);
+		final int end = Math.min(length, this.width - x);
+		while (i < end) {
+			final int cx = x + i;
+			final int span = Math.min(this.mask + 1 - (cx & this.mask), end - i);
+			final long position = this.offset(cx, y);
+			ByteBuffer segment = this.segment((int) (position / SEGMENT)).duplicate();
+			segment.position((int) (position % SEGMENT));
+			// The cells being replaced come out of the counts first
+			segment.get(this.previous, 0, span);
+			for (int j = 0; j < span; j++) {
+				if (this.previous[j] != row[offset + i + j]) {
+					this.count(this.previous[j], -1);
+					this.count(row[offset + i + j], 1);
+				}
+			}
+			segment.position((int) (position % SEGMENT));
+			segment.put(row, offset + i, span);
+			i += span;
+		}
+	}
+
+	public void flush() {
+		if (this.mode != FileChannel.MapMode.READ_WRITE)
+			return;
+		this.header.force();
+		for (int i = 0; i < this.segments.length(); i++) {
+			MappedByteBuffer segment = this.segments.get(i);
+			if (segment != null)
+				segment.force();
+		}
+	}
+
+	@Override
+	public void dispose() {
+		this.flush();
+		try {
+			this.file.close();
+		} catch (IOException e) {
+			throw new GdxRuntimeException("Couldn't close map file", e);
+		}
+	}
+}
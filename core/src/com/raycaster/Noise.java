@@ -1,156 +1,232 @@
 package com.raycaster;
 
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.stream.IntStream;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.Color;
 import com.github.tommyettinger.digital.MathTools;
 import com.github.tommyettinger.digital.TrigTools;
 import com.github.tommyettinger.digital.ArrayTools;
 
+// A seeded permutation table, fixed once built, so one instance can be sampled from any number of
+// threads and differently seeded instances can generate side by side
 public class Noise {
 	protected static final long default_seed = MathTools.GOLDEN_LONGS[0];
 	protected static final int default_bits = Byte.SIZE;
 	protected static final int max_bits = Short.SIZE;
 
-	private static char mask;
-	private static char[] p;
+	protected final Long seed;
+	protected final int bits;
 
-	static {
-		generatePermutationTable(default_bits, default_seed);
+	private final char mask;
+	private final char[] p;
+
+	public Noise() {
+		this(default_bits, default_seed);
+	}
+
+	public Noise(long seed) {
+		this(default_bits, seed);
 	}
 
-	protected static void generatePermutationTable(int bits, Long seed) {
+	// A null seed shuffles the table at random
+	public Noise(int bits, Long seed) {
+		this.seed = seed;
+		this.bits = bits;
+
 		final int shift = Math.min(bits, max_bits);
 		final int length = shift > 0 ? 1 << shift : 1;
-		mask = (char)(length - 1);
+		this.mask = (char)(length - 1);
 
 		final char[] permutation = ArrayTools.shuffle(
-			ArrayTools.charSpan(mask),
+			ArrayTools.charSpan(this.mask),
 			seed == null ? null : new java.util.Random(seed)
 		);
 
-		p = new char[length*2];
+		this.p = new char[length*2];
 		for (int i = 0; i < length; i++)
-			p[i] = p[i + length] = permutation[i];
+			this.p[i] = this.p[i + length] = permutation[i];
 	}
 
-	public static Pixmap fractalNoise(int width, int height, int depth, float gain, float clip) {
+	public Pixmap fractalNoise(int width, int height, int depth, float gain, float clip) {
 		return fractalNoise(width, height, depth, gain, clip, Color.WHITE);
 	}
 
-	public static Pixmap fractalNoise(int width, int height, int depth) {
+	public Pixmap fractalNoise(int width, int height, int depth) {
 		return fractalNoise(width, height, depth, 0f, 1f, Color.WHITE);
 	}
-	public static Pixmap fractalNoise(int width, int height, int depth, Color tint) {
+	public Pixmap fractalNoise(int width, int height, int depth, Color tint) {
 		return fractalNoise(width, height, depth, 0f, 1f, tint);
 	}
-	public static Pixmap fractalNoise(int width, int height, int depth, float gain, float clip, Color tint) {
-		float[][] result = new float[width][height];
+	public Pixmap fractalNoise(int width, int height, int depth, float gain, float clip, Color tint) {
+		final float[] result = new float[width * height];
+		final float[] octave = new float[width * height];
+		final float[] range = new float[height * 2];
 
 		final int exponent = depth > 0 ? 1 << depth : 1;
 
-		for (int i = 1; i <= exponent; i *= 2) {
-			result = blend(result, noise(width, height, i), i);
+		// Every sweep folds the previous octave into the sum while it generates the next one,
+		// and the final sweep only folds, measuring the range of the sum on the way
+		int persistence = 0;
+		float minimum = 0f, maximum = 0f;
+		for (int frequency = 1; persistence <= exponent; frequency *= 2) {
+			sweep(result, octave, width, height, frequency <= exponent ? frequency : 0, persistence, minimum, maximum, range);
+			minimum = minimum(range);
+			maximum = maximum(range);
+			persistence = frequency;
 		}
-		return getPixmap(normalize(result), gain, clip, tint);
+		return getPixmap(result, width, height, minimum, maximum, gain, clip, tint);
 	}
 
-	protected static float[][] blend(float[][] noise1, float[][] noise2, float persistence)
-	{
-		final int width = Math.min(noise1.length, noise2.length);
-		final int height = Math.min(noise1[0].length, noise2[0].length);
-
-		float[][] result = new float[width][height];
-
-		for (int x = 0; x < width; x++) {
-			for (int y = 0; y < height; y++) {
-				result[x][y] = noise1[x][y] + (noise2[x][y] / persistence);
+	protected void sweep(final float[] result, final float[] octave, final int width, final int height, final int frequency, final int persistence, final float minimum, final float maximum, final float[] range) {
+		// Along a row only x moves, so its point on the circle is worked out once for the whole sweep
+		final float[] columnX, columnY;
+		if (frequency > 0) {
+			columnX = new float[width];
+			columnY = new float[width];
+			for (int x = 0; x < width; x++) {
+				final float dx = (float) x * (float) frequency / (float) width * TrigTools.TAU;
+				columnX[x] = TrigTools.sin(dx);
+				columnY[x] = TrigTools.cos(dx);
 			}
+		} else {
+			columnX = columnY = null;
 		}
-
-		return result;
+		IntStream.range(0, height).parallel().forEach(y -> {
+			final int row = y * width;
+			// The previous octave is folded in before the row is overwritten with the next one
+			if (persistence > 0)
+				for (int i = row; i < row + width; i++)
+					result[i] += MathTools.norm(minimum, maximum, octave[i]) / persistence;
+			if (frequency > 0) {
+				final float dy = (float) y * (float) frequency / (float) height * TrigTools.TAU;
+				this.noise(columnX, columnY, TrigTools.sin(dy), TrigTools.cos(dy), octave, row, width);
+			}
+			float low = Float.POSITIVE_INFINITY;
+			float high = Float.NEGATIVE_INFINITY;
+			for (int i = row; i < row + width; i++) {
+				final float value = frequency > 0 ? octave[i] : result[i];
+				low = Math.min(low, value);
+				high = Math.max(high, value);
+			}
+			range[y * 2] = low;
+			range[y * 2 + 1] = high;
+		});
 	}
 
-	protected static Pixmap getPixmap(float[][] noise, float gain, float clip, Color tint) {
-		final int width = noise.length, height = noise[0].length;
-
-		Pixmap result = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+	protected static Pixmap getPixmap(final float[] noise, final int width, final int height, final float minimum, final float maximum, final float gain, final float clip, final Color tint) {
+		final Pixmap result = new Pixmap(width, height, Pixmap.Format.RGBA8888);
 		result.setFilter(Pixmap.Filter.NearestNeighbour);
-		for (int x = 0; x < width; x++) {
-			for (int y = 0; y < height; y++) {
-				float gamma = MathTools.clamp(noise[x][y] + gain, 0f, 1f);
-				if (gamma <= clip)
-				{
-					Color color = new Color(tint);
-					color.mul(gamma, gamma, gamma, 1f);
-					result.drawPixel(x, y, Color.rgba8888(color));
-				}
-			}
-		}
+
+		// Packed RGBA goes straight into the pixmap's buffer instead of one JNI call per pixel
+		final IntBuffer pixels = result.getPixels().order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+		final int alpha = (int) (tint.a * 255);
+		IntStream.range(0, height).parallel().forEach(y -> {
+			for (int x = 0, i = y * width; x < width; x++, i++)
+				pixels.put(i, pixel(noise[i], minimum, maximum, gain, clip, tint, alpha));
+		});
 
 		return result;
 	}
 
-	public static Pixmap perlinNoise(int width, int height, int exponent) {
-		return perlinNoise(width, height, exponent, 0f, 1f, Color.WHITE);
+	// Brighter with the noise and tinted, or clear once it passes the clip
+	protected static int pixel(float value, float minimum, float maximum, float gain, float clip, Color tint, int alpha) {
+		float gamma = MathTools.clamp(MathTools.norm(minimum, maximum, value) + gain, 0f, 1f);
+		if (gamma <= clip)
+			return (int) (tint.r * gamma * 255) << 24 | (int) (tint.g * gamma * 255) << 16 | (int) (tint.b * gamma * 255) << 8 | alpha;
+		return 0;
 	}
 
-	public static Pixmap perlinNoise(int width, int height, int exponent, float gain, float clip) {
-		return perlinNoise(width, height, exponent, gain, clip, Color.WHITE);
+	private static float minimum(float[] range) {
+		float minimum = Float.POSITIVE_INFINITY;
+		for (int i = 0; i < range.length; i += 2)
+			minimum = Math.min(minimum, range[i]);
+		return minimum;
 	}
 
-	public static Pixmap perlinNoise(int width, int height, int exponent, Color tint) {
-		return perlinNoise(width, height, exponent, 0f, 1f, tint);
+	private static float maximum(float[] range) {
+		float maximum = Float.NEGATIVE_INFINITY;
+		for (int i = 1; i < range.length; i += 2)
+			maximum = Math.max(maximum, range[i]);
+		return maximum;
 	}
 
-	public static Pixmap perlinNoise(int width, int height, int exponent, float gain, float clip, Color tint) {		
-		return getPixmap(noise(width, height, exponent), gain, clip, tint);
+	public Pixmap perlinNoise(int width, int height, int exponent) {
+		return perlinNoise(width, height, exponent, 0f, 1f, Color.WHITE);
 	}
 
-	private static float[][] normalize(float[][] noise){
-		int width = noise.length, height = noise[0].length;
-		float minValue = Float.POSITIVE_INFINITY;
-		float maxValue = Float.NEGATIVE_INFINITY;
-
-		for (int x = 0; x < width; x++) {
-			for (int y = 0; y < height; y++) {
-				if (noise[x][y] < minValue)
-					minValue = noise[x][y];
-				else if (noise[x][y] > maxValue)
-					maxValue = noise[x][y];
-			}
-		}
-
-		float[][] result = new float[width][height];
-		for (int x = 0; x < width; x++) {
-			for (int y = 0; y < height; y++) {
-				result[x][y] = MathTools.norm(minValue, maxValue, noise[x][y]);
-			}
-		}
-
-		return result;
+	public Pixmap perlinNoise(int width, int height, int exponent, float gain, float clip) {
+		return perlinNoise(width, height, exponent, gain, clip, Color.WHITE);
 	}
 
-	private static float[][] noise(int width, int height, int exponent){
-		float[][] result = new float[width][height];
-
-		for (int x = 0; x < width; x++) {
-			for (int y = 0; y < height; y++) {
-				// FIND RELATIVE X,Y OF POINT
-				float dx = (float) x * (float) exponent / (float) width;
-				float dy = (float) y * (float) exponent / (float) height;
+	public Pixmap perlinNoise(int width, int height, int exponent, Color tint) {
+		return perlinNoise(width, height, exponent, 0f, 1f, tint);
+	}
 
-				result[x][y] = noise(dx, dy);
-			}
-		}
-		return normalize(result);
+	public Pixmap perlinNoise(int width, int height, int exponent, float gain, float clip, Color tint) {
+		final float[] noise = new float[width * height];
+		final float[] range = new float[height * 2];
+		sweep(noise, noise, width, height, exponent, 0, 0f, 0f, range);
+		return getPixmap(noise, width, height, minimum(range), maximum(range), gain, clip, tint);
 	}
 
-	private static float noise(float x, float y) {
-		float dx = x * TrigTools.TAU, dy = y * TrigTools.TAU;
-		return noise(TrigTools.sin(dx),TrigTools.cos(dx),TrigTools.sin(dy),TrigTools.cos(dy));
+	// A row of samples sharing z and w, as in every row of a sweep. Everything that depends on z and w
+	// alone is worked out once per row instead of once per sample, and each sample then goes through the
+	// same operations in the same order as noise(x, y, z, w), so the results are identical to the bit
+	public void noise(float[] x, float[] y, float z, float w, float[] out, int offset, int length) {
+		final char[] p = this.p;
+		final char mask = this.mask;
+		final int z0 = MathTools.floor(z), w0 = MathTools.floor(w);
+		final float z0f = z - z0, w0f = w - w0, z1f = z - (z0 + 1), w1f = w - (w0 + 1);
+		final float u = fade(z0f), v = fade(w0f);
+		final int z00 = p[(z0 & mask) + p[w0 & mask]], z01 = p[(z0 & mask) + p[w0 + 1 & mask]];
+		final int z10 = p[(z0 + 1 & mask) + p[w0 & mask]], z11 = p[(z0 + 1 & mask) + p[w0 + 1 & mask]];
+
+		for (int i = 0; i < length; i++) {
+			final float px = x[i], py = y[i];
+			int x0 = MathTools.floor(px), y0 = MathTools.floor(py);
+			final float x0f = px - x0, y0f = py - y0, x1f = px - (x0 + 1), y1f = py - (y0 + 1);
+			final int x1 = x0 + 1 & mask, y1 = y0 + 1 & mask;
+			x0 &= mask;
+			y0 &= mask;
+			final float s = fade(x0f), t = fade(y0f);
+			out[offset + i] = MathTools.lerp(
+				MathTools.lerp(
+					MathTools.lerp(
+						MathTools.lerp(grad(p[x0 + p[y0 + z00]], x0f, y0f, z0f, w0f), grad(p[x0 + p[y0 + z01]], x0f, y0f, z0f, w1f), v),
+						MathTools.lerp(grad(p[x0 + p[y0 + z10]], x0f, y0f, z1f, w0f), grad(p[x0 + p[y0 + z11]], x0f, y0f, z1f, w1f), v),
+						u
+					),
+					MathTools.lerp(
+						MathTools.lerp(grad(p[x0 + p[y1 + z00]], x0f, y1f, z0f, w0f), grad(p[x0 + p[y1 + z01]], x0f, y1f, z0f, w1f), v),
+						MathTools.lerp(grad(p[x0 + p[y1 + z10]], x0f, y1f, z1f, w0f), grad(p[x0 + p[y1 + z11]], x0f, y1f, z1f, w1f), v),
+						u
+					),
+					t
+				),
+				MathTools.lerp(
+					MathTools.lerp(
+						MathTools.lerp(grad(p[x1 + p[y0 + z00]], x1f, y0f, z0f, w0f), grad(p[x1 + p[y0 + z01]], x1f, y0f, z0f, w1f), v),
+						MathTools.lerp(grad(p[x1 + p[y0 + z10]], x1f, y0f, z1f, w0f), grad(p[x1 + p[y0 + z11]], x1f, y0f, z1f, w1f), v),
+						u
+					),
+					MathTools.lerp(
+						MathTools.lerp(grad(p[x1 + p[y1 + z00]], x1f, y1f, z0f, w0f), grad(p[x1 + p[y1 + z01]], x1f, y1f, z0f, w1f), v),
+						MathTools.lerp(grad(p[x1 + p[y1 + z10]], x1f, y1f, z1f, w0f), grad(p[x1 + p[y1 + z11]], x1f, y1f, z1f, w1f), v),
+						u
+					),
+					t
+				),
+				s
+			);
+		}
 	}
 
-	private static float noise(float x, float y, float z, float w) {
+	// One sample on its own, what the row kernel has to match
+	public float noise(float x, float y, float z, float w) {
+		final char[] p = this.p;
+		final char mask = this.mask;
 		int x0 = MathTools.floor( x ); // Integer part of x
 		int y0 = MathTools.floor( y ); // Integer part of y
 		int z0 = MathTools.floor( z ); // Integer part of y
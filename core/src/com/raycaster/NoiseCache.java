@@ -0,0 +1,179 @@
+package com.raycaster;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+
+public class NoiseCache {
+	protected static final int MAGIC = 0x52434E43;
+	protected static final int VERSION = 1;
+	protected static final String EXTENSION = ".rgba";
+	protected static final long DEFAULT_CAPACITY = 64L << 20;
+
+	protected final Noise noise;
+	protected final FileHandle directory;
+	protected final long capacity;
+
+	public NoiseCache() {
+		this(new Noise());
+	}
+
+	public NoiseCache(Noise noise) {
+		this(noise, Gdx.files.external(".raycaster/cache"));
+	}
+
+	public NoiseCache(Noise noise, FileHandle directory) {
+		this(noise, directory, DEFAULT_CAPACITY);
+	}
+
+	public NoiseCache(Noise noise, FileHandle directory, long capacity) {
+		this.noise = noise;
+		this.directory = directory;
+		this.capacity = capacity;
+	}
+
+	public Pixmap perlinNoise(int width, int height, int exponent, float gain, float clip, Color tint) {
+		final String key = this.key("perlin", width, height, exponent, gain, clip, tint);
+		Pixmap pixmap = this.load(key, width, height);
+		if (pixmap == null)
+			pixmap = this.store(key, this.noise.perlinNoise(width, height, exponent, gain, clip, tint));
+		return pixmap;
+	}
+
+	public Pixmap fractalNoise(int width, int height, int depth, float gain, float clip, Color tint) {
+		final String key = this.key("fractal", width, height, depth, gain, clip, tint);
+		Pixmap pixmap = this.load(key, width, height);
+		if (pixmap == null)
+			pixmap = this.store(key, this.noise.fractalNoise(width, height, depth, gain, clip, tint));
+		return pixmap;
+	}
+
+	protected String key(String kind, int width, int height, int octaves, float gain, float clip, Color tint) {
+		// A random permutation table can't be reproduced, so there is nothing to cache
+		if (this.noise.seed == null)
+			return null;
+		return kind + ':' + width + 'x' + height + ':' + octaves
+			+ ':' + Float.floatToIntBits(gain) + ':' + Float.floatToIntBits(clip)
+			+ ':' + Integer.toHexString(Color.rgba8888(tint))
+			+ ':' + Long.toHexString(this.noise.seed) + ':' + this.noise.bits;
+	}
+
+	protected FileHandle file(String key) {
+		long hash = 0xCBF29CE484222325L;
+		for (int i = 0; i < key.length(); i++)
+			hash = (hash ^ key.charAt(i)) * 0x100000001B3L;
+		return this.directory.child(String.format("%016x", hash) + EXTENSION);
+	}
+
+	protected Pixmap load(String key, int width, int height) {
+		if (key == null)
+			return null;
+		final File file = this.file(key).file();
+		if (!file.isFile())
+			return null;
+
+		// Anything cut short or garbled is dropped from the cache, and the noise generated again
+		boolean corrupt = true;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+			if (mapped.remaining() < 20 || mapped.getInt() != MAGIC || mapped.getInt() != VERSION)
+				return null;
+			corrupt = false;
+			if (mapped.getInt() != width || mapped.getInt() != height)
+				return null;
+			final int length = mapped.getInt();
+			corrupt = length < 0 || length > mapped.remaining();
+			if (corrupt)
+				return null;
+			final byte[] stored = new byte[length];
+			mapped.get(stored);
+			if (!key.equals(new String(stored, StandardCharsets.UTF_8)))
+				return null;
+			corrupt = mapped.remaining() != width * height * 4;
+			if (corrupt)
+				return null;
+
+			Pixmap pixmap = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+			pixmap.setFilter(Pixmap.Filter.NearestNeighbour);
+			ByteBuffer pixels = pixmap.getPixels();
+			pixels.position(0);
+			pixels.put(mapped);
+			pixels.position(0);
+
+			// Touching the file keeps it at the young end of the eviction order
+			file.setLastModified(System.currentTimeMillis());
+			return pixmap;
+		} catch (IOException e) {
+			return null;
+		} finally {
+			if (corrupt)
+				file.delete();
+		}
+	}
+
+	protected Pixmap store(String key, Pixmap pixmap) {
+		if (key == null)
+			return pixmap;
+
+		final File file = this.file(key).file();
+		final File temp = new File(file.getPath() + ".tmp");
+		final byte[] stored = key.getBytes(StandardCharsets.UTF_8);
+		file.getParentFile().mkdirs();
+
+		try (RandomAccessFile raf = new RandomAccessFile(temp, "rw")) {
+			ByteBuffer header = ByteBuffer.allocate(20 + stored.length);
+			header.putInt(MAGIC).putInt(VERSION).putInt(pixmap.getWidth()).putInt(pixmap.getHeight()).putInt(stored.length).put(stored);
+			header.position(0);
+
+			ByteBuffer pixels = pixmap.getPixels().duplicate();
+			pixels.position(0);
+
+			FileChannel channel = raf.getChannel();
+			channel.truncate(0);
+			while (header.hasRemaining())
+				channel.write(header);
+			while (pixels.hasRemaining())
+				channel.write(pixels);
+		} catch (IOException e) {
+			temp.delete();
+			return pixmap;
+		}
+
+		if (!temp.renameTo(file)) {
+			file.delete();
+			if (!temp.renameTo(file))
+				temp.delete();
+		}
+		this.evict();
+		return pixmap;
+	}
+
+	protected void evict() {
+		final File[] files = this.directory.file().listFiles((dir, name) -> name.endsWith(EXTENSION));
+		if (files == null)
+			return;
+
+		long size = 0;
+		for (File file : files)
+			size += file.length();
+		if (size <= this.capacity)
+			return;
+
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		for (int i = 0; i < files.length && size > this.capacity; i++) {
+			final long length = files[i].length();
+			if (files[i].delete())
+				size -= length;
+		}
+	}
+}
@@ -2,7 +2,6 @@ package com.raycaster;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.utils.Disposable;
-import com.badlogic.gdx.graphics.Texture;
 import com.github.tommyettinger.digital.MathTools;
 import com.github.tommyettinger.digital.TrigTools;
 
@@ -13,7 +12,7 @@ public class Player implements Disposable {
 	protected double paces;
 	protected double weaponScale;
 
-	protected Texture weapon;
+	protected Surface weapon;
 	protected float speed;
 
 	public Player(double x, double y) {
@@ -21,12 +20,17 @@ public class Player implements Disposable {
 	}
 
 	public Player(double x, double y, double direction) {
+		this(x, y, direction, new Surface(Gdx.files.internal("hand.png")));
+	}
+
+	// The weapon belongs to the player and is disposed with it, unless it is shared between players
+	public Player(double x, double y, double direction, Surface weapon) {
 		this.x = x;
 		this.y = y;
 		this.direction = MathTools.truncate(direction);
 		this.paces = 0;
 		this.speed = 3;
-		this.weapon = new Texture(Gdx.files.internal("hand.png"));
+		this.weapon = weapon;
 		this.weaponScale = 0.5f;
 	}
 
@@ -0,0 +1,107 @@
+package com.raycaster;
+
+public class Profiler {
+	public enum Phase {
+		UPDATE,
+		CLOUDS,
+		SKY,
+		FLOOR,
+		COLUMNS,
+		SPRITES,
+		WEAPON,
+		RASTER
+	}
+
+	public enum Counter {
+		RAYS,
+		CELLS,
+		DRAW_CALLS,
+		UPLOADED_BYTES
+	}
+
+	protected static final Phase[] PHASES = Phase.values();
+	protected static final Counter[] COUNTERS = Counter.values();
+	protected static final int HISTORY = 120;
+
+	// JFR only exists from 8u262 onwards, so the event class is never touched unless it can load
+	private static final boolean recordable = isRecordable();
+
+	protected boolean enabled;
+	protected boolean overlay;
+	protected int frame;
+	protected final long[] durations = new long[PHASES.length];
+	protected final long[] counters = new long[COUNTERS.length];
+	protected final float[][] history = new float[PHASES.length][HISTORY];
+
+	private final long[] started = new long[PHASES.length];
+
+	public Profiler() {
+		this(Boolean.getBoolean("raycaster.profile"));
+	}
+
+	public Profiler(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	private static boolean isRecordable() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	// Showing the overlay switches recording on, hiding it leaves recording as it was
+	public void setOverlay(boolean overlay) {
+		this.overlay = overlay;
+		if (overlay)
+			this.enabled = true;
+	}
+
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	public void begin(Phase phase) {
+		if (this.enabled)
+			this.started[phase.ordinal()] = System.nanoTime();
+	}
+
+	public void end(Phase phase) {
+		if (this.enabled)
+			this.durations[phase.ordinal()] += System.nanoTime() - this.started[phase.ordinal()];
+	}
+
+	public void count(Counter counter, long amount) {
+		if (this.enabled)
+			this.counters[counter.ordinal()] += amount;
+	}
+
+	public long get(Phase phase) {
+		return this.durations[phase.ordinal()];
+	}
+
+	public long get(Counter counter) {
+		return this.counters[counter.ordinal()];
+	}
+
+	public void frame() {
+		if (!this.enabled)
+			return;
+
+		final int slot = this.frame++ % HISTORY;
+		for (int phase = 0; phase < PHASES.length; phase++)
+			this.history[phase][slot] = this.durations[phase] / 1e6f;
+
+		if (recordable)
+			FrameEvent.emit(this);
+
+		java.util.Arrays.fill(this.durations, 0);
+		java.util.Arrays.fill(this.counters, 0);
+	}
+}
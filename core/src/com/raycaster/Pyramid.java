@@ -0,0 +1,135 @@
+package com.raycaster;
+
+import com.badlogic.gdx.utils.LongMap;
+
+// One occupancy bit per block of 4x4, 16x16 and 64x64 cells, so rays can step over empty blocks whole.
+// Bits are kept per 64x64 tile, and only for tiles that have been measured and hold some open cell: a
+// missing tile counts as occupied, so it is never skipped, whatever the cells under it really are
+public class Pyramid {
+	protected static final int SHIFT = 2;
+	protected static final int LEVELS = 3;
+	protected static final int TILE = SHIFT * LEVELS;
+
+	protected final int width;
+	protected final int height;
+	// Per tile, 256 bits for the 4x4 blocks in the first four words, then 16 bits for the 16x16 blocks
+	// and one for the whole tile in the last
+	protected final LongMap<long[]> tiles;
+
+	public Pyramid(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.tiles = new LongMap<long[]>();
+	}
+
+	public void clear() {
+		this.tiles.clear();
+	}
+
+	private static long key(int x, int y) {
+		return (long) (y >> TILE) << 32 | (x >> TILE);
+	}
+
+	// The bit of a block within the words of its tile
+	private static int bit(int level, int x, int y) {
+		final int shift = SHIFT * level, side = 1 << TILE - shift;
+		final int bit = ((y & (1 << TILE) - 1) >> shift) * side + ((x & (1 << TILE) - 1) >> shift);
+		return level == LEVELS ? 16 : bit;
+	}
+
+	private static boolean get(long[] tile, int level, int x, int y) {
+		final int bit = bit(level, x, y);
+		return (tile[level == 1 ? bit >> 6 : 4] & 1L << bit) != 0;
+	}
+
+	private static void set(long[] tile, int level, int x, int y, boolean occupied) {
+		final int bit = bit(level, x, y), word = level == 1 ? bit >> 6 : 4;
+		if (occupied)
+			tile[word] |= 1L << bit;
+		else
+			tile[word] &= ~(1L << bit);
+	}
+
+	private static boolean full(long[] tile) {
+		return (tile[0] & tile[1] & tile[2] & tile[3]) == -1L;
+	}
+
+	public boolean isMeasured(int x, int y) {
+		return this.tiles.containsKey(key(x, y));
+	}
+
+	// Marks the blocks above an occupied cell. A tile with no open cell left is dropped, as if never measured
+	public void mark(int x, int y) {
+		final long key = key(x, y);
+		final long[] tile = this.tiles.get(key);
+		if (tile == null)
+			return;
+		for (int level = 1; level <= LEVELS; level++)
+			set(tile, level, x, y, true);
+		if (full(tile))
+			this.tiles.remove(key);
+	}
+
+	// Reads the tile around a cell from the grid, replacing whatever was known about it
+	public void measure(Grid grid, int x, int y) {
+		final int size = 1 << TILE;
+		final int left = x & -size, top = y & -size;
+		final long[] tile = new long[5];
+		final byte[] row = new byte[size];
+		for (int cy = top; cy < Math.min(top + size, this.height); cy++) {
+			grid.getRow(left, cy, size, row, 0);
+			for (int cx = left; cx < Math.min(left + size, this.width); cx++)
+				if (row[cx - left] > 0)
+					for (int level = 1; level <= LEVELS; level++)
+						set(tile, level, cx, cy, true);
+		}
+		// Blocks reaching past the edge of the grid hold border cells, and stay occupied
+		for (int cy = top; cy < top + size; cy += 1 << SHIFT)
+			for (int cx = left; cx < left + size; cx += 1 << SHIFT)
+				if (cx + (1 << SHIFT) > this.width || cy + (1 << SHIFT) > this.height)
+					for (int level = 1; level <= LEVELS; level++)
+						set(tile, level, cx, cy, true);
+		if (full(tile))
+			this.tiles.remove(key(x, y));
+		else
+			this.tiles.put(key(x, y), tile);
+	}
+
+	// A cell was opened or closed. Opening only clears a block once all of its children are empty, from the
+	// bottom up, and opening a cell in a tile that isn't measured measures it
+	public void update(Grid grid, int x, int y, boolean occupied) {
+		if (occupied) {
+			this.mark(x, y);
+			return;
+		}
+		final long[] tile = this.tiles.get(key(x, y));
+		if (tile == null) {
+			this.measure(grid, x, y);
+			return;
+		}
+		for (int level = 1; level <= LEVELS; level++) {
+			final int size = 1 << SHIFT * level, child = 1 << SHIFT * (level - 1);
+			final int left = x & -size, top = y & -size;
+			for (int cy = top; cy < top + size; cy += child)
+				for (int cx = left; cx < left + size; cx += child)
+					if (level == 1 ? cx >= this.width || cy >= this.height || grid.get(cx, cy) > 0 : get(tile, level - 1, cx, cy))
+						return;
+			set(tile, level, x, y, false);
+		}
+	}
+
+	// The shift of the largest empty block around the cell, or 0 when even the smallest is occupied.
+	// Blocks that reach past the edge hold border cells, so they never count as empty.
+	public int empty(int x, int y) {
+		if (x < 0 || y < 0 || x >= this.width || y >= this.height)
+			return 0;
+		final long[] tile = this.tiles.get(key(x, y));
+		if (tile == null)
+			return 0;
+		for (int level = LEVELS; level > 0; level--) {
+			if (!get(tile, level, x, y))
+				return SHIFT * level;
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,346 @@
+package com.raycaster;
+
+import java.nio.IntBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import com.badlogic.gdx.utils.Disposable;
+import com.github.tommyettinger.digital.MathTools;
+import com.github.tommyettinger.digital.TrigTools;
+
+public class Rasterizer implements Disposable {
+	protected class Task extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		protected final Player player;
+		protected final Map map;
+		protected final int from;
+		protected final int to;
+		protected final int grain;
+
+		public Task(Player player, Map map, int from, int to, int grain) {
+			this.player = player;
+			this.map = map;
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from <= this.grain) {
+				draw(this.player, this.map, this.from, this.to);
+			} else {
+				final int middle = (this.from + this.to) >>> 1;
+				invokeAll(
+					new Task(this.player, this.map, this.from, middle, this.grain),
+					new Task(this.player, this.map, middle, this.to, this.grain)
+				);
+			}
+		}
+	}
+
+	protected static final int FRACTION = 16;
+	protected static final int OPAQUE = 0x000000FF;
+	protected static final int BACKGROUND = 0;
+	protected static final int FOREGROUND = 1;
+	protected static final int FLOOR = 2;
+
+	protected final int width;
+	protected final int height;
+	protected final double focalLength;
+	protected final Lens lens;
+	protected final double lightRange;
+	protected final Canvas canvas;
+	protected final Hits hits;
+	protected final Caster caster;
+	protected final Sprites sprites;
+
+	protected float ambient;
+	protected Atlas atlas;
+
+	public Rasterizer(int width, int height, double fov, double range, double lightRange) {
+		this.width = width;
+		this.height = height;
+		this.lens = new Lens(this.width, this.height, fov, (double) this.width / this.height);
+		this.focalLength = this.lens.focalLength;
+		this.lightRange = lightRange;
+		this.canvas = new Canvas(this.width, this.height);
+		this.hits = new Hits(this.width, Camera.LAYERS);
+		this.caster = new Caster(this.hits, range);
+		this.sprites = new Sprites();
+		this.lens.aim(this.hits);
+	}
+
+	public Canvas render(Player player, Map map, ForkJoinPool pool) {
+		this.ambient = (float) Byte.toUnsignedInt(map.light) / 0xFF;
+		this.atlas = map.getWallAtlas();
+		map.entities.cull(player.x, player.y, player.direction, this.focalLength, this.caster.range, this.width, this.sprites);
+		if (pool == null) {
+			this.draw(player, map, 0, this.width);
+		} else {
+			final int grain = Math.max(this.width / (pool.getParallelism() * 4), 1);
+			pool.invoke(new Task(player, map, 0, this.width, grain));
+		}
+		return this.canvas;
+	}
+
+	protected void draw(Player player, Map map, int from, int to) {
+		this.caster.cast(map, player.x, player.y, player.direction, from, to);
+		if (map.skybox == null) {
+			this.drawGradient(Map.ZENITH, Map.SKY, from, to);
+		} else {
+			this.drawFlat(0, 0, 0, player.direction, map.skybox.background, 4, BACKGROUND, from, to);
+			final Clouds clouds = map.skybox.clouds;
+			if (clouds == null)
+				this.drawFlat(player.x, player.y, 50, player.direction, map.skybox.foreground, 2500, FOREGROUND, from, to);
+			else
+				this.drawFlat(player.x, player.y, 50, player.direction, clouds.current, clouds.previous, clouds.fade, 2500, FOREGROUND, from, to);
+		}
+		this.drawFlat(player.x, player.y, 0, player.direction, map.floorTexture, 1, FLOOR, from, to);
+		this.drawColumns(map, this.atlas, from, to);
+		this.drawSprites(map.entities, this.atlas, from, to);
+		this.drawWeapon(player.weapon, player.weaponScale, player.paces, from, to);
+	}
+
+	// Stands in for the sky until the skybox is generated, blending from the top of the screen to the horizon
+	protected void drawGradient(int top, int bottom, int from, int to) {
+		final IntBuffer pixels = this.canvas.pixels;
+		final int horizon = this.height / 2;
+		for (int y = 0; y < horizon; y++) {
+			final int color = blend(top, bottom & ~0xFF | y * 0xFF / horizon);
+			for (int x = from; x < to; x++)
+				pixels.put(y * this.width + x, color);
+		}
+	}
+
+	protected void drawFlat(double px, double py, double pz, double angle, Surface texture, double scale, int layer, int from, int to) {
+		this.drawFlat(px, py, pz, angle, texture, null, 0, scale, layer, from, to);
+	}
+
+	// The foreground can fade in from a previous texture of the same size, by a fade out of 0x100
+	protected void drawFlat(double px, double py, double pz, double angle, Surface texture, Surface previous, int fade, double scale, int layer, int from, int to) {
+		final IntBuffer pixels = this.canvas.pixels;
+		final int[] texels = texture.pixels;
+		final int[] before = previous == null ? null : previous.pixels;
+		final int width = texture.width, height = texture.height;
+		final int maskX = texture.maskX, maskY = texture.maskY;
+		final double[] rows = this.lens.row;
+
+		final double size = Math.max(width, height) / Math.sqrt(scale);
+
+		final double tx = px * size;
+		final double ty = py * size;
+		final double tz = Math.max(1d + 2 * pz, 1d) * size;
+
+		final double sin = TrigTools.sin(angle);
+		final double cos = TrigTools.cos(angle);
+
+		// The hardware path projects flats onto a square buffer, so rows are stretched by the aspect ratio to match
+		final int horizon = this.height / 2;
+		final double scaleY = this.width / 2 * tz;
+		final double scaleX = this.width / 2 * this.focalLength;
+
+		for (int y = 0; y < horizon; y++) {
+			final double distance = scaleY * rows[y];
+			final double ratio = distance / scaleX;
+
+			final double dx = -sin * ratio;
+			final double dy = cos * ratio;
+
+			final long stepX = (long) (dx * (1 << FRACTION));
+			final long stepY = (long) (dy * (1 << FRACTION));
+			long sx = (long) ((tx + distance * cos + (from - this.width / 2) * dx) * (1 << FRACTION));
+			long sy = (long) ((ty + distance * sin + (from - this.width / 2) * dy) * (1 << FRACTION));
+
+			final int row = (layer == FLOOR ? horizon + y : horizon - 1 - y) * this.width;
+			if (layer == BACKGROUND) {
+				// Sky background, lifted towards white by the ambient light
+				final int lift = (int) (this.ambient * 0x100);
+				for (int x = from; x < to; x++, sx += stepX, sy += stepY) {
+					final int texel = texels[wrap(sy, height, maskY) * width + wrap(sx, width, maskX)];
+					pixels.put(row + x, lift(blend(OPAQUE, texel), lift));
+				}
+			} else if (layer == FOREGROUND) {
+				if (before == null) {
+					for (int x = from; x < to; x++, sx += stepX, sy += stepY) {
+						final int texel = texels[wrap(sy, height, maskY) * width + wrap(sx, width, maskX)];
+						pixels.put(row + x, blend(pixels.get(row + x), texel));
+					}
+				} else {
+					for (int x = from; x < to; x++, sx += stepX, sy += stepY) {
+						final int i = wrap(sy, height, maskY) * width + wrap(sx, width, maskX);
+						pixels.put(row + x, blend(pixels.get(row + x), Clouds.mix(before[i], texels[i], fade)));
+					}
+				}
+			} else {
+				// Floor, darkened towards the horizon like the gradient quad in the hardware path
+				final int light = 0x100 - (int) ((1f - this.ambient) * (1f - (float) y / horizon) * 0x100);
+				for (int x = from; x < to; x++, sx += stepX, sy += stepY) {
+					final int texel = texels[wrap(sy, height, maskY) * width + wrap(sx, width, maskX)];
+					pixels.put(row + x, shade(blend(OPAQUE, texel), light));
+				}
+			}
+		}
+	}
+
+	private void drawColumns(Map map, Atlas atlas, int from, int to) {
+		final IntBuffer pixels = this.canvas.pixels;
+		final int[] texels = atlas.surface.pixels;
+		final int stride = atlas.surface.width;
+		final Hits hits = this.hits;
+
+		for (int column = from; column < to; column++) {
+			for (int layer = 0; layer < hits.count[column]; layer++) {
+				final int index = hits.index(column, layer);
+				final double distance = hits.distance[index];
+				final double z = distance * this.lens.cos[column];
+				final double wallHeight = this.height * hits.height[index] / z;
+				final double wallY = this.height / 2 * (1 + 1 / z) - wallHeight;
+
+				// Clipped to the top of the nearer wall, which the caster recorded as this wall's clip
+				final double clip = layer == 0 ? this.height : this.height / 2 * (1 - hits.clip[index]);
+				final int top = Math.max((int) wallY, 0);
+				final int bottom = (int) Math.min(Math.min((int) wallY + (int) wallHeight, clip), this.height);
+				if (top >= bottom)
+					continue;
+
+				final int region = map.getMaterial(hits.height[index]);
+				final int width = atlas.regionWidth[region], height = atlas.regionHeight[region];
+				final int srcX = atlas.regionX[region] + Math.min(MathTools.floor(width * hits.offset[index]), width - 1);
+				final int srcTop = atlas.regionY[region];
+				final long stepV = (long) (height * (double) (1 << FRACTION) / wallHeight);
+				long v = Math.max((long) ((top - wallY) * height * (1 << FRACTION) / wallHeight), 0);
+
+				final int fog = 0x100 - (int) (MathTools.clamp((distance + hits.shading[index]) / this.lightRange - this.ambient, 0d, 1d) * 0x100);
+				final int light = Math.min(fog + Byte.toUnsignedInt(hits.light[index]), 0x100);
+				for (int y = top; y < bottom; y++, v += stepV) {
+					final int srcY = srcTop + Math.min((int) (v >> FRACTION), height - 1);
+					pixels.put(y * this.width + column, shade(blend(OPAQUE, texels[srcY * stride + srcX]), light));
+				}
+			}
+		}
+	}
+
+	// Back to front, each sprite column is skipped where the nearest wall is in front of it
+	private void drawSprites(Entities entities, Atlas atlas, int from, int to) {
+		final IntBuffer pixels = this.canvas.pixels;
+		final int[] texels = atlas.surface.pixels;
+		final int stride = atlas.surface.width;
+		final Hits hits = this.hits;
+		final Sprites sprites = this.sprites;
+
+		for (int n = 0; n < sprites.count; n++) {
+			final int sprite = sprites.get(n);
+			final int id = sprites.id[sprite];
+			final double z = sprites.z[sprite];
+			final double left = sprites.center[sprite] - sprites.half[sprite];
+			final double span = sprites.half[sprite] * 2;
+			final int first = Math.max(MathTools.ceil(left), from);
+			final int last = Math.min(MathTools.ceil(left + span), to);
+			if (first >= last)
+				continue;
+
+			final int region = entities.material[id];
+			final int width = atlas.regionWidth[region], height = atlas.regionHeight[region];
+			final double spriteHeight = this.height * entities.scale[id] / z;
+			final double spriteY = this.height / 2 * (1 + 1 / z) - spriteHeight;
+			final int top = Math.max((int) spriteY, 0);
+			final int bottom = Math.min((int) (spriteY + spriteHeight), this.height);
+			final long stepV = (long) (height * (double) (1 << FRACTION) / spriteHeight);
+			final long startV = Math.max((long) ((top - spriteY) * height * (1 << FRACTION) / spriteHeight), 0);
+
+			final int light = 0x100 - (int) (MathTools.clamp(z / this.lightRange - this.ambient, 0d, 1d) * 0x100);
+			for (int column = first; column < last; column++) {
+				final int end = Math.min(bottom, this.occluder(column, z));
+				if (end <= top)
+					continue;
+				final int srcX = atlas.regionX[region] + MathTools.clamp((int) ((column - left) / span * width), 0, width - 1);
+				long v = startV;
+				for (int y = top; y < end; y++, v += stepV) {
+					final int texel = texels[(atlas.regionY[region] + Math.min((int) (v >> FRACTION), height - 1)) * stride + srcX];
+					if ((texel & 0xFF) == 0)
+						continue;
+					final int index = y * this.width + column;
+					pixels.put(index, blend(pixels.get(index), shade(texel, light)));
+				}
+			}
+		}
+	}
+
+	// The first row of the column hidden by walls at or in front of depth z. Each wall is drawn down to the
+	// one in front of it, so they cover everything below the top of the furthest of them
+	private int occluder(int column, double z) {
+		final Hits hits = this.hits;
+		int row = this.height;
+		for (int layer = 0; layer < hits.count[column]; layer++) {
+			final int index = hits.index(column, layer);
+			final double wallZ = hits.distance[index] * this.lens.cos[column];
+			if (wallZ > z)
+				break;
+			row = Math.min(row, Math.max((int) (this.height / 2 * (1 + 1 / wallZ) - this.height * hits.height[index] / wallZ), 0));
+		}
+		return row;
+	}
+
+	private void drawWeapon(Surface weapon, double scale, double paces, int from, int to) {
+		final IntBuffer pixels = this.canvas.pixels;
+		final int[] texels = weapon.pixels;
+
+		final double height = this.height * scale;
+		final double width = height * weapon.width / weapon.height;
+		final double x = (this.width - width / 2) - TrigTools.sin(paces) * width / 4;
+		final double y = (this.height - height / 2) - TrigTools.cos(paces * 2) * height / 4;
+
+		final int left = Math.max((int) x, from), right = Math.min((int) (x + width), to);
+		final int top = Math.max((int) y, 0), bottom = Math.min((int) (y + height), this.height);
+
+		final long stepU = (long) (weapon.width * (double) (1 << FRACTION) / width);
+		final long stepV = (long) (weapon.height * (double) (1 << FRACTION) / height);
+
+		for (int row = top; row < bottom; row++) {
+			final int srcY = MathTools.clamp((int) ((long) ((row - y) * weapon.height * (1 << FRACTION) / height) >> FRACTION), 0, weapon.height - 1);
+			long u = Math.max((long) ((left - x) * weapon.width * (1 << FRACTION) / width), 0);
+			for (int column = left; column < right; column++, u += stepU) {
+				final int srcX = Math.min((int) (u >> FRACTION), weapon.width - 1);
+				final int index = row * this.width + column;
+				pixels.put(index, blend(pixels.get(index), texels[srcY * weapon.width + srcX]));
+			}
+		}
+	}
+
+	protected static int wrap(long fixed, int size, int mask) {
+		if (mask >= 0)
+			return (int) (fixed >> FRACTION) & mask;
+		return (int) Math.floorMod(fixed >> FRACTION, (long) size);
+	}
+
+	protected static int blend(int dst, int src) {
+		final int alpha = src & 0xFF;
+		if (alpha == 0xFF)
+			return src;
+		if (alpha == 0)
+			return dst;
+		final int inverse = 0xFF - alpha;
+		final int r = (((src >>> 24) & 0xFF) * alpha + ((dst >>> 24) & 0xFF) * inverse) / 0xFF;
+		final int g = (((src >>> 16) & 0xFF) * alpha + ((dst >>> 16) & 0xFF) * inverse) / 0xFF;
+		final int b = (((src >>> 8) & 0xFF) * alpha + ((dst >>> 8) & 0xFF) * inverse) / 0xFF;
+		return r << 24 | g << 16 | b << 8 | 0xFF;
+	}
+
+	protected static int shade(int rgba, int light) {
+		final int r = (((rgba >>> 24) & 0xFF) * light) >> 8;
+		final int g = (((rgba >>> 16) & 0xFF) * light) >> 8;
+		final int b = (((rgba >>> 8) & 0xFF) * light) >> 8;
+		return r << 24 | g << 16 | b << 8 | (rgba & 0xFF);
+	}
+
+	protected static int lift(int rgba, int light) {
+		final int r = (rgba >>> 24) & 0xFF, g = (rgba >>> 16) & 0xFF, b = (rgba >>> 8) & 0xFF;
+		return (r + (((0xFF - r) * light) >> 8)) << 24 | (g + (((0xFF - g) * light) >> 8)) << 16 | (b + (((0xFF - b) * light) >> 8)) << 8 | (rgba & 0xFF);
+	}
+
+	@Override
+	public void dispose() {
+		this.canvas.dispose();
+	}
+}
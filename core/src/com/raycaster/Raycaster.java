@@ -4,12 +4,16 @@ import com.badlogic.gdx.ApplicationAdapter;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input;
 import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Rectangle;
+import com.github.tommyettinger.digital.MathTools;
 
 public class Raycaster extends ApplicationAdapter {
 	private static final int VIRTUAL_WIDTH = 1920;
 	private static final int VIRTUAL_HEIGHT = 1080;
 	private static final float ASPECT_RATIO = (float) VIRTUAL_WIDTH / (float) VIRTUAL_HEIGHT;
+	private static final int[] RESOLUTIONS = {240, 300, 360, 480, 600, 720};
+	private static final double FRAME_BUDGET = 1000 / 60d;
 	private Player player;
 	private Map map;
 	private Controls controls;
@@ -17,15 +21,59 @@ public class Raycaster extends ApplicationAdapter {
 	private float seconds = 0;
 	private Rectangle viewport;
 	private float scale = 1f;
+	private String recordPath;
+	private Recording recording;
+	private Profiler profiler;
+	private ResolutionScaler scaler;
+	private boolean streaming;
+	private StreamingGrid world;
+	private Startup startup;
+
+	public Raycaster() {
+		this(null);
+	}
+
+	// Every frame's controls and delta time are written to recordPath on exit, for headless replay
+	public Raycaster(String recordPath) {
+		this(recordPath, false);
+	}
+
+	// A streamed world is generated around the player as it moves, instead of as one 32x32 map
+	public Raycaster(String recordPath, boolean streaming) {
+		this.recordPath = recordPath;
+		this.streaming = streaming;
+	}
 
 	@Override
 	public void create() {
-		this.player = new Player(1.5, 15.5);
-		this.map = new Map(32);
+		final long seed = MathUtils.random.nextLong();
+		if (this.streaming) {
+			this.world = new StreamingGrid(seed);
+			this.player = new Player(this.world.width / 2 + 0.5, this.world.height / 2 + 0.5);
+			this.map = new Map(this.world);
+			this.map.skybox.animate(Clouds.DEFAULT_BUDGET);
+			this.world.load(this.map, this.player.x, this.player.y);
+			this.map.set(this.player.x, this.player.y, 0);
+		} else {
+			// The map, textures and sky are built in the background, and picked up in render when they are done
+			this.startup = new Startup(seed, 1.5, 15.5);
+		}
 		this.controls = new Controls();
 		this.camera = new Camera(VIRTUAL_WIDTH, VIRTUAL_HEIGHT, 360, 90);
-		this.map.randomize(0.15f);
-		this.map.set(player.x, player.y, 0);
+		this.profiler = new Profiler();
+		this.camera.setProfiler(this.profiler);
+		this.scaler = new ResolutionScaler(this.camera, FRAME_BUDGET, RESOLUTIONS);
+		// Replays rebuild the 32x32 map from the seed, so streamed sessions aren't recorded
+		if (this.recordPath != null && !this.streaming)
+			this.recording = new Recording(seed);
+	}
+
+	public ResolutionScaler getScaler() {
+		return this.scaler;
+	}
+
+	public Startup getStartup() {
+		return this.startup;
 	}
 
 	@Override
@@ -54,23 +102,64 @@ public class Raycaster extends ApplicationAdapter {
 		if (Gdx.input.isKeyPressed(Input.Keys.ESCAPE)) {
 			Gdx.app.exit();
 		}
+		if (Gdx.input.isKeyJustPressed(Input.Keys.F3)) {
+			profiler.setOverlay(!profiler.overlay);
+		}
 
 		Gdx.gl.glClearColor(0, 0, 0, 1);
 		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
 
+		if (map == null) {
+			if (!startup.isReady())
+				return;
+			map = startup.getMap();
+			player = new Player(1.5, 15.5, MathTools.FLOAT_ROUNDING_ERROR, startup.getHand());
+		}
+		if (startup != null)
+			startup.poll(map);
+
 		camera.update();
 		Gdx.gl.glViewport((int) viewport.x, (int) viewport.y, (int) viewport.width, (int) viewport.height);
 
+		// Only the work of the frame is measured, the wait for vsync would hide any headroom
+		final long start = System.nanoTime();
 		seconds = Gdx.graphics.getDeltaTime();
+		profiler.begin(Profiler.Phase.UPDATE);
 		controls.update();
+		if (recording != null)
+			recording.record(controls, seconds);
 		player.update(controls, map, seconds);
+		if (world != null)
+			world.update(map, player.x, player.y);
+		map.survey(player.x, player.y);
+		map.flush();
+		profiler.end(Profiler.Phase.UPDATE);
+		// A slice of the next cloud keyframe, sized to fit the budget whatever else the frame costs
+		profiler.begin(Profiler.Phase.CLOUDS);
+		if (map.skybox != null && map.skybox.clouds != null)
+			map.skybox.clouds.update();
+		profiler.end(Profiler.Phase.CLOUDS);
 		camera.render(player, map);
+		profiler.frame();
+		scaler.update(System.nanoTime() - start);
+
+		if (startup != null && !startup.isFinished()) {
+			startup.frame(map);
+			if (startup.isFinished())
+				Gdx.app.log("Startup", startup.toString());
+		}
 	}
 	
 	@Override
 	public void dispose() {
+		if (this.recording != null)
+			this.recording.save(Gdx.files.absolute(this.recordPath));
 		this.camera.dispose();
-		this.map.dispose();
-		this.player.dispose();
+		if (this.startup != null)
+			this.startup.dispose();
+		if (this.map != null)
+			this.map.dispose();
+		if (this.player != null)
+			this.player.dispose();
 	}
 }
@@ -0,0 +1,96 @@
+package com.raycaster;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+public class Recording {
+	protected static final int MAGIC = 0x52435452;
+	protected static final int VERSION = 1;
+	protected static final int HEADER = 20;
+	protected static final int FRAME = 9;
+
+	private static final int LEFT = 1 << 0;
+	private static final int RIGHT = 1 << 1;
+	private static final int FORWARD = 1 << 2;
+	private static final int BACKWARD = 1 << 3;
+	private static final int MOVE = 1 << 4;
+	private static final int TURN = 1 << 5;
+	private static final int TURN_LEFT = 1 << 6;
+	private static final int TURN_RIGHT = 1 << 7;
+
+	protected final long seed;
+	protected int frames;
+
+	private byte[] data;
+
+	public Recording(long seed) {
+		this(seed, new byte[FRAME * 1024], 0);
+	}
+
+	private Recording(long seed, byte[] data, int frames) {
+		this.seed = seed;
+		this.data = data;
+		this.frames = frames;
+	}
+
+	public void record(Controls controls, float seconds) {
+		if ((this.frames + 1) * FRAME > this.data.length)
+			this.data = Arrays.copyOf(this.data, this.data.length * 2);
+
+		int flags = 0;
+		if (controls.left) flags |= LEFT;
+		if (controls.right) flags |= RIGHT;
+		if (controls.forward) flags |= FORWARD;
+		if (controls.backward) flags |= BACKWARD;
+		if (controls.move) flags |= MOVE;
+		if (controls.turn) flags |= TURN;
+		if (controls.turnLeft) flags |= TURN_LEFT;
+		if (controls.turnRight) flags |= TURN_RIGHT;
+
+		ByteBuffer frame = ByteBuffer.wrap(this.data, this.frames * FRAME, FRAME);
+		frame.put((byte) flags).putInt(controls.x).putFloat(seconds);
+		this.frames++;
+	}
+
+	public float play(int index, Controls controls) {
+		ByteBuffer frame = ByteBuffer.wrap(this.data, index * FRAME, FRAME);
+		final int flags = frame.get();
+		controls.left = (flags & LEFT) != 0;
+		controls.right = (flags & RIGHT) != 0;
+		controls.forward = (flags & FORWARD) != 0;
+		controls.backward = (flags & BACKWARD) != 0;
+		controls.move = (flags & MOVE) != 0;
+		controls.turn = (flags & TURN) != 0;
+		controls.turnLeft = (flags & TURN_LEFT) != 0;
+		controls.turnRight = (flags & TURN_RIGHT) != 0;
+		controls.x = frame.getInt();
+		return frame.getFloat();
+	}
+
+	public int size() {
+		return this.frames;
+	}
+
+	public void save(FileHandle file) {
+		ByteBuffer header = ByteBuffer.allocate(HEADER);
+		header.putInt(MAGIC).putInt(VERSION).putLong(this.seed).putInt(this.frames);
+		file.writeBytes(header.array(), false);
+		file.writeBytes(this.data, 0, this.frames * FRAME, true);
+	}
+
+	public static Recording load(FileHandle file) {
+		ByteBuffer bytes = ByteBuffer.wrap(file.readBytes());
+		if (bytes.remaining() < HEADER || bytes.getInt() != MAGIC || bytes.getInt() != VERSION)
+			throw new GdxRuntimeException("Not a version " + VERSION + " recording: " + file.path());
+		final long seed = bytes.getLong();
+		final int frames = bytes.getInt();
+		if (bytes.remaining() < frames * FRAME)
+			throw new GdxRuntimeException("Truncated recording: " + file.path());
+
+		byte[] data = new byte[frames * FRAME];
+		bytes.get(data);
+		return new Recording(seed, data, frames);
+	}
+}
@@ -0,0 +1,91 @@
+package com.raycaster;
+
+import java.util.Arrays;
+
+// Steps the camera between resolution tiers to keep frame times under a target
+public class ResolutionScaler {
+	protected static final int WINDOW = 30;
+	// Only drop when over budget, and only rise when the next tier is predicted to fit with room to spare
+	protected static final double UPPER = 1.05;
+	protected static final double LOWER = 0.85;
+	// After dropping a tier, wait this many windows before trying the one that was too slow again
+	protected static final int HOLD = 4;
+
+	protected final Camera camera;
+	protected final int[] tiers;
+	protected final double target;
+
+	protected int tier;
+	protected int switches;
+	protected double average;
+
+	private final double[] samples = new double[WINDOW];
+	private int count;
+	private int hold;
+	private double sum;
+
+	public ResolutionScaler(Camera camera, double target, int... tiers) {
+		this.camera = camera;
+		this.target = target;
+		this.tiers = tiers.clone();
+		Arrays.sort(this.tiers);
+		this.camera.allocate(this.tiers);
+
+		// Start from the tier closest to the camera's current resolution
+		for (int i = 1; i < this.tiers.length; i++)
+			if (Math.abs(this.tiers[i] - camera.getResolution()) < Math.abs(this.tiers[this.tier] - camera.getResolution()))
+				this.tier = i;
+		this.camera.setResolution(this.tiers[this.tier]);
+	}
+
+	public void update(long nanos) {
+		final int slot = this.count++ % WINDOW;
+		this.sum += nanos / 1e6 - this.samples[slot];
+		this.samples[slot] = nanos / 1e6;
+		if (this.count < WINDOW)
+			return;
+
+		this.average = this.sum / WINDOW;
+		if (this.average > this.target * UPPER && this.tier > 0) {
+			this.step(this.tier - 1);
+			this.hold = HOLD * WINDOW;
+		} else if (this.hold > 0) {
+			this.hold--;
+		} else if (this.tier < this.tiers.length - 1) {
+			// Flats fill resolution squared pixels, so cost is predicted to grow with the square of the step
+			final double scale = (double) this.tiers[this.tier + 1] / this.tiers[this.tier];
+			if (this.average * scale * scale < this.target * LOWER)
+				this.step(this.tier + 1);
+		}
+	}
+
+	// A fresh window after every switch keeps the old tier's frames from triggering another
+	private void step(int tier) {
+		this.tier = tier;
+		this.camera.setResolution(this.tiers[tier]);
+		this.switches++;
+		this.count = 0;
+		this.sum = 0;
+		Arrays.fill(this.samples, 0);
+	}
+
+	public int getTier() {
+		return this.tier;
+	}
+
+	public int getResolution() {
+		return this.tiers[this.tier];
+	}
+
+	public double getAverage() {
+		return this.average;
+	}
+
+	public double getTarget() {
+		return this.target;
+	}
+
+	public int getSwitches() {
+		return this.switches;
+	}
+}
@@ -0,0 +1,55 @@
+package com.raycaster;
+
+import java.util.Arrays;
+
+// The entities culled for one frame, with their depth and where they land on screen in columns
+public class Sprites {
+	protected static final double NEAR = 0.1;
+
+	protected int count;
+	protected int[] id;
+	protected double[] z;
+	protected double[] center;
+	protected double[] half;
+	protected long[] order;
+
+	public Sprites() {
+		this(Entities.CAPACITY);
+	}
+
+	public Sprites(int capacity) {
+		this.id = new int[capacity];
+		this.z = new double[capacity];
+		this.center = new double[capacity];
+		this.half = new double[capacity];
+		this.order = new long[capacity];
+	}
+
+	protected void add(int id, double z, double center, double half) {
+		if (this.count == this.id.length) {
+			final int capacity = this.count * 2;
+			this.id = Arrays.copyOf(this.id, capacity);
+			this.z = Arrays.copyOf(this.z, capacity);
+			this.center = Arrays.copyOf(this.center, capacity);
+			this.half = Arrays.copyOf(this.half, capacity);
+			this.order = Arrays.copyOf(this.order, capacity);
+		}
+		this.id[this.count] = id;
+		this.z[this.count] = z;
+		this.center[this.count] = center;
+		this.half[this.count] = half;
+		this.count++;
+	}
+
+	// Positive floats sort the same as their bits, so depth and index pack into one primitive key
+	protected void sort() {
+		for (int i = 0; i < this.count; i++)
+			this.order[i] = (long) Float.floatToIntBits((float) this.z[i]) << 32 | i;
+		Arrays.sort(this.order, 0, this.count);
+	}
+
+	// The index of the nth sprite from the back
+	public int get(int n) {
+		return (int) this.order[this.count - 1 - n];
+	}
+}
@@ -0,0 +1,137 @@
+package com.raycaster;
+
+import java.util.concurrent.CompletableFuture;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.Disposable;
+
+// Builds the world in stages on background threads: the PNGs are decoded side by side, the map is
+// generated once its textures are in, and the sky noise runs alongside all of it. Results are only
+// taken, and uploaded to GL, on the render thread, so the first frame goes out as soon as the
+// map is there, with a flat sky until the noise is done
+public class Startup implements Disposable {
+	protected final long start;
+	protected final CompletableFuture<Surface> hand;
+	protected final CompletableFuture<Map> map;
+	protected final CompletableFuture<Map.SkyBox> sky;
+
+	private volatile long decoded;
+	private volatile long generated;
+	private volatile long noise;
+	private long firstFrame;
+	private long fullQuality;
+	private boolean taken;
+	private boolean skyTaken;
+	private boolean started;
+	private boolean finished;
+
+	public Startup(long seed, double x, double y) {
+		this.start = System.nanoTime();
+		final CompletableFuture<Surface> wall = this.decode("wall.png");
+		final CompletableFuture<Surface> floor = this.decode("floor.png");
+		this.hand = this.decode("hand.png");
+		CompletableFuture.allOf(wall, floor, this.hand).thenRun(() -> this.decoded = System.nanoTime());
+		this.map = wall.thenCombineAsync(floor, (wallTexture, floorTexture) -> {
+			Map map = new Map(new HeapGrid(32, 32), wallTexture, floorTexture);
+			map.randomize(0.15f, seed);
+			map.set(x, y, 0);
+			map.getWallAtlas();
+			this.generated = System.nanoTime();
+			return map;
+		});
+		this.sky = CompletableFuture.supplyAsync(() -> {
+			Map.SkyBox skybox = Map.createSkyBox();
+			skybox.animate(Clouds.DEFAULT_BUDGET);
+			this.noise = System.nanoTime();
+			return skybox;
+		});
+	}
+
+	private CompletableFuture<Surface> decode(String file) {
+		return CompletableFuture.supplyAsync(() -> new Surface(Gdx.files.internal(file)));
+	}
+
+	// Whether the map and the weapon are in, and a first frame can be drawn
+	public boolean isReady() {
+		return this.map.isDone() && this.hand.isDone();
+	}
+
+	public Map getMap() {
+		final Map map = this.map.join();
+		this.taken = true;
+		// Textures the hardware path draws from go up now rather than in the middle of the first frame
+		if (Gdx.gl != null)
+			map.getWallAtlas().surface.texture();
+		return map;
+	}
+
+	public Surface getHand() {
+		final Surface hand = this.hand.join();
+		if (Gdx.gl != null)
+			hand.texture();
+		return hand;
+	}
+
+	// Hands the sky over once it is generated. The flats are drawn from its pixels, so there is nothing to upload
+	public void poll(Map map) {
+		if (!this.skyTaken && this.sky.isDone()) {
+			map.setSkyBox(this.sky.join());
+			this.skyTaken = true;
+		}
+	}
+
+	// Called after each frame until the sky is in, to time the first frame and the first one at full quality
+	public void frame(Map map) {
+		if (this.finished)
+			return;
+		final long now = System.nanoTime();
+		if (!this.started) {
+			this.firstFrame = now - this.start;
+			this.started = true;
+		}
+		if (map.skybox != null) {
+			this.fullQuality = now - this.start;
+			this.finished = true;
+		}
+	}
+
+	public boolean isFinished() {
+		return this.finished;
+	}
+
+	public double getFirstFrame() {
+		return this.firstFrame / 1e6;
+	}
+
+	public double getFullQuality() {
+		return this.fullQuality / 1e6;
+	}
+
+	public double getDecoded() {
+		return this.decoded == 0 ? 0 : (this.decoded - this.start) / 1e6;
+	}
+
+	public double getGenerated() {
+		return this.generated == 0 ? 0 : (this.generated - this.start) / 1e6;
+	}
+
+	public double getNoise() {
+		return this.noise == 0 ? 0 : (this.noise - this.start) / 1e6;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("first frame %.1f ms, full quality %.1f ms (textures %.1f ms, map %.1f ms, sky %.1f ms)",
+			this.getFirstFrame(), this.getFullQuality(), this.getDecoded(), this.getGenerated(), this.getNoise());
+	}
+
+	// Anything never handed over is released once it is done
+	@Override
+	public void dispose() {
+		if (!this.taken) {
+			this.map.thenAccept(Map::dispose);
+			this.hand.thenAccept(Surface::dispose);
+		}
+		if (!this.skyTaken)
+			this.sky.thenAccept(Map.SkyBox::dispose);
+	}
+}
@@ -0,0 +1,376 @@
+package com.raycaster;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.LongMap;
+import com.github.tommyettinger.digital.MathTools;
+import squidpony.squidgrid.MimicFill;
+import squidpony.squidgrid.mapping.ConnectingMapGenerator;
+import squidpony.squidmath.RNG;
+
+// A world generated a chunk at a time from a seed and the chunk's coordinates, as the player gets near.
+// Chunks are built on background workers but only enter the grid, and the map built on it, in update
+// on the render thread, so rays never wait on generation: whatever is not there yet reads as wall.
+// Only the chunks that have been generated take any memory, kept by their coordinates in a hash table.
+// Edited chunks are written to a temporary file when evicted, so all that stays in memory for each is
+// where it lies in the file. The file grows by one chunk per chunk ever edited, and is deleted on dispose
+public class StreamingGrid extends Grid {
+	protected static class Chunk {
+		protected final long key;
+		protected final byte[] cells;
+		protected long used;
+		protected boolean edited;
+
+		protected Chunk(long key, byte[] cells) {
+			this.key = key;
+			this.cells = cells;
+		}
+	}
+
+	// Cells run from 0 to 2^24 along both axes, with the player starting in the middle: millions of cells
+	// from any edge, while a position scaled up to texels for the floor still fits in an int
+	protected static final int EXTENT = 1 << 24;
+
+	protected static final int DEFAULT_SHIFT = 5;
+	protected static final int RADIUS = 2;
+	protected static final int LOOKAHEAD = 2;
+	protected static final int OPENINGS = 2;
+	protected static final int INSTALLS = 2;
+	protected static final float DENSITY = 0.15f;
+
+	protected final long seed;
+	protected final int shift;
+	protected final int size;
+	protected final int mask;
+	protected final int capacity;
+	protected final LongMap<Chunk> chunks;
+
+	private final HashSet<Long> requested;
+	private final Chunk[] resident;
+	private final byte[] solid;
+	private final HashMap<Long, Long> saved;
+	private final ConcurrentLinkedQueue<Chunk> generated;
+	private final ExecutorService workers;
+	private int residentCount;
+	private long frame;
+	private double lastX;
+	private double lastY;
+	private int loads;
+	private int evictions;
+	private FileHandle spill;
+	private RandomAccessFile edits;
+
+	public StreamingGrid(long seed) {
+		this(seed, DEFAULT_SHIFT, 64, Math.max(Runtime.getRuntime().availableProcessors() / 2, 1));
+	}
+
+	public StreamingGrid(long seed, int shift, int capacity, int workers) {
+		super(EXTENT, EXTENT);
+		this.seed = seed;
+		this.shift = shift;
+		this.size = 1 << shift;
+		this.mask = this.size - 1;
+		// Everything around the player and ahead of it has to fit, or chunks would be evicted as they arrive
+		this.capacity = Math.max(capacity, (2 * RADIUS + 1) * (2 * RADIUS + 1) + 9);
+		this.chunks = new LongMap<Chunk>(this.capacity * 2);
+		this.requested = new HashSet<Long>();
+		this.resident = new Chunk[this.capacity];
+		this.solid = new byte[this.size * this.size];
+		Arrays.fill(this.solid, BORDER);
+		this.saved = new HashMap<Long, Long>();
+		this.generated = new ConcurrentLinkedQueue<Chunk>();
+		this.workers = Executors.newFixedThreadPool(workers, runnable -> {
+			Thread thread = new Thread(runnable, "chunks");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.lastX = Double.NaN;
+	}
+
+	private static long key(int cx, int cy) {
+		return (long) cy << 32 | cx & 0xFFFFFFFFL;
+	}
+
+	private Chunk chunk(int x, int y) {
+		return this.chunks.get(key(x >> this.shift, y >> this.shift));
+	}
+
+	@Override
+	public int get(int x, int y) {
+		if (!this.contains(x, y))
+			return BORDER;
+		final Chunk chunk = this.chunk(x, y);
+		return chunk == null ? BORDER : chunk.cells[(y & this.mask) << this.shift | x & this.mask];
+	}
+
+	// Edits are kept when their chunk is evicted, and brought back instead of generating it again
+	@Override
+	public void set(int x, int y, byte value) {
+		if (!this.contains(x, y))
+			return;
+		final Chunk chunk = this.chunk(x, y);
+		if (chunk == null)
+			return;
+		chunk.cells[(y & this.mask) << this.shift | x & this.mask] = value;
+		chunk.edited = true;
+	}
+
+	// Whatever isn't loaded is border, so only the resident chunks are read
+	@Override
+	public boolean count(long[] counts) {
+		Arrays.fill(counts, 0);
+		counts[BORDER] = (long) this.width * this.height - (long) this.residentCount * this.size * this.size;
+		for (int i = 0; i < this.residentCount; i++)
+			for (byte cell : this.resident[i].cells)
+				counts[cell]++;
+		return true;
+	}
+
+	@Override
+	public void getRow(int x, int y, int length, byte[] row, int offset) {
+		if (y < 0 || y >= this.height) {
+			super.getRow(x, y, length, row, offset);
+			return;
+		}
+		int i = 0;
+		while (i < length) {
+			final int cx = x + i;
+			if (cx < 0 || cx >= this.width) {
+				row[offset + i++] = BORDER;
+				continue;
+			}
+			final int span = Math.min(Math.min(this.size - (cx & this.mask), this.width - cx), length - i);
+			final Chunk chunk = this.chunk(cx, y);
+			if (chunk == null)
+				Arrays.fill(row, offset + i, offset + i + span, BORDER);
+			else
+				System.arraycopy(chunk.cells, (y & this.mask) << this.shift | cx & this.mask, row, offset + i, span);
+			i += span;
+		}
+	}
+
+	// Bulk writes are how chunks are loaded and unloaded, so unlike set they don't count as edits
+	@Override
+	public void setRow(int x, int y, int length, byte[] row, int offset) {
+		if (y < 0 || y >= this.height)
+			return;
+		int i = Math.max(-x, 0);
+		final int end = Math.min(length, this.width - x);
+		while (i < end) {
+			final int cx = x + i;
+			final int span = Math.min(this.size - (cx & this.mask), end - i);
+			final Chunk chunk = this.chunk(cx, y);
+			if (chunk != null)
+				System.arraycopy(row, offset + i, chunk.cells, (y & this.mask) << this.shift | cx & this.mask, span);
+			i += span;
+		}
+	}
+
+	// Builds the chunk under a position on the calling thread, for the spawn point before the first frame
+	public void load(Map map, double x, double y) {
+		final int cx = MathTools.floor(x) >> this.shift, cy = MathTools.floor(y) >> this.shift;
+		if (!this.contains(cx << this.shift, cy << this.shift))
+			return;
+		if (this.chunks.containsKey(key(cx, cy)))
+			return;
+		final byte[] cells = this.restore(key(cx, cy));
+		if (cells != null)
+			this.install(map, cx, cy, cells).edited = true;
+		else
+			this.install(map, cx, cy, this.generate(cx, cy));
+	}
+
+	// Once per frame on the render thread: asks for the chunks around the player and ahead of where it is
+	// heading, and moves finished chunks into the map
+	public void update(Map map, double x, double y) {
+		this.frame++;
+		final int cx = MathTools.floor(x) >> this.shift, cy = MathTools.floor(y) >> this.shift;
+		for (int j = cy - RADIUS; j <= cy + RADIUS; j++)
+			for (int i = cx - RADIUS; i <= cx + RADIUS; i++)
+				this.request(map, i, j, true);
+
+		final double dx = x - this.lastX, dy = y - this.lastY;
+		final double moved = Math.sqrt(dx * dx + dy * dy);
+		if (moved > 0) {
+			final double ahead = LOOKAHEAD * this.size / moved;
+			final int ax = MathTools.floor(x + dx * ahead) >> this.shift, ay = MathTools.floor(y + dy * ahead) >> this.shift;
+			for (int j = ay - 1; j <= ay + 1; j++)
+				for (int i = ax - 1; i <= ax + 1; i++)
+					this.request(map, i, j, false);
+		}
+		this.lastX = x;
+		this.lastY = y;
+
+		// Each chunk rewrites its cells in the map, so only a few go in per frame and the rest wait their turn
+		Chunk chunk;
+		for (int n = 0; n < INSTALLS && (chunk = this.generated.poll()) != null; n++) {
+			this.requested.remove(chunk.key);
+			if (!this.chunks.containsKey(chunk.key))
+				this.install(map, (int) chunk.key, (int) (chunk.key >> 32), chunk.cells);
+		}
+	}
+
+	private void request(Map map, int cx, int cy, boolean needed) {
+		if (!this.contains(cx << this.shift, cy << this.shift))
+			return;
+		final long key = key(cx, cy);
+		final Chunk chunk = this.chunks.get(key);
+		if (chunk != null) {
+			if (needed)
+				chunk.used = this.frame;
+			return;
+		}
+		if (this.requested.contains(key))
+			return;
+		final byte[] cells = this.restore(key);
+		if (cells != null) {
+			this.install(map, cx, cy, cells).edited = true;
+			return;
+		}
+		this.requested.add(key);
+		this.workers.execute(() -> this.generated.add(new Chunk(key, this.generate(cx, cy))));
+	}
+
+	// Makes room first by evicting the chunk that went longest without being needed
+	private Chunk install(Map map, int cx, int cy, byte[] cells) {
+		if (this.residentCount == this.capacity)
+			this.evict(map, this.eldest());
+		final Chunk chunk = new Chunk(key(cx, cy), new byte[this.size * this.size]);
+		Arrays.fill(chunk.cells, BORDER);
+		chunk.used = this.frame;
+		this.chunks.put(chunk.key, chunk);
+		this.resident[this.residentCount++] = chunk;
+		map.setRegion(cx << this.shift, cy << this.shift, this.size, this.size, cells);
+		this.loads++;
+		return chunk;
+	}
+
+	private int eldest() {
+		int eldest = 0;
+		for (int i = 1; i < this.residentCount; i++)
+			if (this.resident[i].used < this.resident[eldest].used)
+				eldest = i;
+		return eldest;
+	}
+
+	// The map is walled over before the chunk is dropped, so whatever it built over the chunk goes with it
+	private void evict(Map map, int slot) {
+		final Chunk chunk = this.resident[slot];
+		if (chunk.edited)
+			this.save(chunk);
+		map.setRegion((int) chunk.key << this.shift, (int) (chunk.key >> 32) << this.shift, this.size, this.size, this.solid);
+		this.chunks.remove(chunk.key);
+		this.resident[slot] = this.resident[--this.residentCount];
+		this.resident[this.residentCount] = null;
+		this.evictions++;
+	}
+
+	// A chunk saved before goes back where it was, so the file only grows with chunks edited for the first time
+	private void save(Chunk chunk) {
+		try {
+			if (this.edits == null) {
+				this.spill = FileHandle.tempFile("chunks");
+				this.edits = new RandomAccessFile(this.spill.file(), "rw");
+			}
+			Long offset = this.saved.get(chunk.key);
+			if (offset == null) {
+				offset = this.edits.length();
+				this.saved.put(chunk.key, offset);
+			}
+			this.edits.seek(offset);
+			this.edits.write(chunk.cells);
+		} catch (IOException e) {
+			throw new GdxRuntimeException("Couldn't save edited chunk", e);
+		}
+	}
+
+	private byte[] restore(long key) {
+		final Long offset = this.saved.get(key);
+		if (offset == null)
+			return null;
+		final byte[] cells = new byte[this.size * this.size];
+		try {
+			this.edits.seek(offset);
+			this.edits.readFully(cells);
+		} catch (IOException e) {
+			throw new GdxRuntimeException("Couldn't restore edited chunk", e);
+		}
+		return cells;
+	}
+
+	// Only depends on the seed and the chunk, so it can run on any thread and always gives the same cells
+	protected byte[] generate(int cx, int cy) {
+		final byte[] cells = new byte[this.size * this.size];
+		final int roomSize = MathTools.round(0.5f / DENSITY);
+		boolean[][] walls = MimicFill.mapToSample(new ConnectingMapGenerator(this.size, this.size, roomSize, roomSize, new RNG(this.hash(cx, cy, 0)), 1).generate(), '#');
+		for (int y = 0; y < this.size; y++)
+			for (int x = 0; x < this.size; x++)
+				cells[y << this.shift | x] = (byte) (walls[x][y] ? 1 : 0);
+
+		// Passages are placed from a hash of the edge itself, so the chunks on either side open the same cells
+		this.carve(cells, this.hash(cx, cy, 1), 0, 0, 1, 0, 0, 1);
+		this.carve(cells, this.hash(cx, cy + 1, 1), 0, this.mask, 1, 0, 0, -1);
+		this.carve(cells, this.hash(cx, cy, 2), 0, 0, 0, 1, 1, 0);
+		this.carve(cells, this.hash(cx + 1, cy, 2), this.mask, 0, 0, 1, -1, 0);
+		return cells;
+	}
+
+	// Opens cells along an edge and digs each one inward until it meets open floor or reaches the middle
+	private void carve(byte[] cells, long hash, int x, int y, int alongX, int alongY, int inX, int inY) {
+		for (int n = 0; n < OPENINGS; n++) {
+			final int position = 1 + (int) Math.floorMod(mix(hash + n), (long) (this.size - 2));
+			int px = x + alongX * position, py = y + alongY * position;
+			for (int depth = 0; depth < this.size / 2; depth++) {
+				cells[py << this.shift | px] = 0;
+				px += inX;
+				py += inY;
+				if (cells[py << this.shift | px] == 0)
+					break;
+			}
+		}
+	}
+
+	private long hash(int cx, int cy, int kind) {
+		return mix(this.seed ^ mix(((long) cx << 32 | cy & 0xFFFFFFFFL) * 3 + kind));
+	}
+
+	private static long mix(long z) {
+		z = (z ^ z >>> 30) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ z >>> 27) * 0x94D049BB133111EBL;
+		return z ^ z >>> 31;
+	}
+
+	public int getResident() {
+		return this.residentCount;
+	}
+
+	public int getLoads() {
+		return this.loads;
+	}
+
+	public int getEvictions() {
+		return this.evictions;
+	}
+
+	@Override
+	public void dispose() {
+		this.workers.shutdownNow();
+		if (this.edits == null)
+			return;
+		try {
+			this.edits.close();
+		} catch (IOException e) {
+			throw new GdxRuntimeException("Couldn't close edited chunks", e);
+		} finally {
+			this.spill.delete();
+		}
+	}
+}
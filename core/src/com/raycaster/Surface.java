@@ -0,0 +1,63 @@
+package com.raycaster;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.github.tommyettinger.digital.MathTools;
+
+public class Surface implements Disposable {
+	protected final int width;
+	protected final int height;
+	protected final int maskX;
+	protected final int maskY;
+	protected final int[] pixels;
+
+	private Pixmap pixmap;
+	private Texture texture;
+
+	public Surface(FileHandle file) {
+		this(new Pixmap(file));
+	}
+
+	public Surface(Pixmap pixmap) {
+		if (pixmap.getFormat() != Pixmap.Format.RGBA8888) {
+			// Texels are cached as RGBA8888 ints, so anything else gets converted once up front
+			Pixmap converted = new Pixmap(pixmap.getWidth(), pixmap.getHeight(), Pixmap.Format.RGBA8888);
+			converted.setBlending(Pixmap.Blending.None);
+			converted.drawPixmap(pixmap, 0, 0);
+			pixmap.dispose();
+			pixmap = converted;
+		}
+		this.pixmap = pixmap;
+		this.width = pixmap.getWidth();
+		this.height = pixmap.getHeight();
+		// Power of two sizes wrap with a mask, anything else is marked with -1
+		this.maskX = MathTools.isPowerOfTwo(this.width) ? this.width - 1 : -1;
+		this.maskY = MathTools.isPowerOfTwo(this.height) ? this.height - 1 : -1;
+		this.pixels = new int[this.width * this.height];
+
+		ByteBuffer bytes = pixmap.getPixels().duplicate();
+		bytes.position(0);
+		bytes.order(ByteOrder.BIG_ENDIAN).asIntBuffer().get(this.pixels);
+	}
+
+	public Texture texture() {
+		if (this.texture == null)
+			this.texture = new Texture(this.pixmap);
+		return this.texture;
+	}
+
+	public boolean isUploaded() {
+		return this.texture != null;
+	}
+
+	@Override
+	public void dispose() {
+		if (this.texture != null)
+			this.texture.dispose();
+		this.pixmap.dispose();
+	}
+}
@@ -9,6 +9,15 @@ public class DesktopLauncher {
 		Lwjgl3ApplicationConfiguration config = new Lwjgl3ApplicationConfiguration();
 		config.setForegroundFPS(60);
 		config.setMaximized(true);
-		new Lwjgl3Application(new Raycaster(), config);
+		// --record <file> captures the session for the headless replay benchmark, --stream walks a large world generated as it is explored
+		String record = null;
+		boolean stream = false;
+		for (int i = 0; i < arg.length; i++) {
+			if (arg[i].equals("--record") && i + 1 < arg.length)
+				record = arg[++i];
+			else if (arg[i].equals("--stream"))
+				stream = true;
+		}
+		new Lwjgl3Application(new Raycaster(record, stream), config);
 	}
 }